@@ -14,6 +14,12 @@ dependencies {
     implementation("io.netty:netty-buffer")
     implementation("io.netty:netty-codec")
     implementation("io.netty:netty-common")
+    implementation("io.netty:netty-transport-classes-epoll")
+    implementation("io.netty:netty-transport-classes-io_uring")
+    runtimeOnly("io.netty:netty-transport-native-epoll::linux-x86_64")
+    runtimeOnly("io.netty:netty-transport-native-epoll::linux-aarch_64")
+    runtimeOnly("io.netty:netty-transport-native-io_uring::linux-x86_64")
+    runtimeOnly("io.netty:netty-transport-native-io_uring::linux-aarch_64")
 
     implementation(platform("org.apache.logging.log4j:log4j-bom:2.24.1"))
     implementation("org.apache.logging.log4j:log4j-api")
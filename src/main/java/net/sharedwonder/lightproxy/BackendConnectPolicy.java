@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+/**
+ * Decides what to do with a connection once its handshake has been parsed, before the backend is dialed.
+ * Only consulted when the backend connection is deferred, see {@code deferBackendConnect} in the proxy config.
+ */
+@FunctionalInterface
+public interface BackendConnectPolicy {
+    Decision decide(ConnectionContext context);
+
+    enum Decision {
+        /**
+         * Connects to the backend and relays the buffered client bytes once it is up.
+         */
+        CONNECT,
+
+        /**
+         * Leaves the connection to the packet handlers without a backend. Packets sent with
+         * {@link ConnectionContext#sendToClient} are written to the client directly.
+         */
+        ANSWER_LOCALLY,
+
+        /**
+         * Closes the connection after writing the packets already sent to the client.
+         */
+        REJECT
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+public final class LoginAdmissionController {
+    private final int maxInFlight;
+
+    private final int queueCapacity;
+
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+    private int inFlight;
+
+    private long admitted;
+
+    private long queuedAdmitted;
+
+    private long rejected;
+
+    private long totalQueueTimeNanos;
+
+    private long maxQueueTimeNanos;
+
+    public LoginAdmissionController(int maxInFlight, int queueCapacity) {
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = Math.max(queueCapacity, 0);
+    }
+
+    public CompletableFuture<Permit> acquire() {
+        synchronized (this) {
+            if (maxInFlight <= 0 || inFlight < maxInFlight) {
+                ++inFlight;
+                ++admitted;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (queue.size() >= queueCapacity) {
+                ++rejected;
+                throw new LoginRejectedException("Too many logins in progress, in flight: " + inFlight + ", queued: " + queue.size());
+            }
+            var waiter = new Waiter(System.nanoTime());
+            queue.add(waiter);
+            waiter.future.whenComplete((permit, cause) -> {
+                if (cause instanceof CancellationException) {
+                    removeWaiter(waiter);
+                }
+            });
+            return waiter.future;
+        }
+    }
+
+    private synchronized void removeWaiter(Waiter waiter) {
+        queue.remove(waiter);
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public synchronized long getAdmitted() {
+        return admitted;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public synchronized long getAverageQueueTime(TimeUnit unit) {
+        return queuedAdmitted == 0 ? 0 : unit.convert(totalQueueTimeNanos / queuedAdmitted, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized long getMaxQueueTime(TimeUnit unit) {
+        return unit.convert(maxQueueTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void release() {
+        while (true) {
+            Waiter waiter;
+            synchronized (this) {
+                waiter = queue.poll();
+                if (waiter == null) {
+                    --inFlight;
+                    return;
+                }
+            }
+            if (waiter.future.complete(new Permit())) {
+                var queueTime = System.nanoTime() - waiter.enqueueTime;
+                synchronized (this) {
+                    ++admitted;
+                    ++queuedAdmitted;
+                    totalQueueTimeNanos += queueTime;
+                    maxQueueTimeNanos = Math.max(maxQueueTimeNanos, queueTime);
+                }
+                LOGGER.debug(() -> "Login admitted after queuing for " + TimeUnit.NANOSECONDS.toMillis(queueTime) + " ms");
+                return;
+            }
+        }
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(LoginAdmissionController.class);
+
+    private record Waiter(long enqueueTime, CompletableFuture<Permit> future) {
+        Waiter(long enqueueTime) {
+            this(enqueueTime, new CompletableFuture<>());
+        }
+    }
+
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {}
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                LoginAdmissionController.this.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+import java.util.HashMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import net.sharedwonder.lightproxy.packet.PacketCompressionUtils;
+import net.sharedwonder.lightproxy.packet.PacketUtils;
+
+public final class PacketBroadcaster {
+    private PacketBroadcaster() {}
+
+    /**
+     * Sends the packet to the clients of all the given connections, compressing it once per distinct
+     * compression threshold. Takes ownership of {@code packet}, and returns the number of connections
+     * the packet has been queued for.
+     */
+    public static int broadcastToClients(Iterable<ConnectionContext> targets, ByteBuf packet) {
+        var frames = new HashMap<Integer, ByteBuf>();
+        var count = 0;
+        try {
+            for (var target : targets) {
+                if (target.isS2CTunneled()) {
+                    continue;
+                }
+                var compressionThreshold = target.isEnabledCompressionForClient() ? target.getCompressionThreshold() : -1;
+                var frame = frames.computeIfAbsent(compressionThreshold, threshold -> encode(threshold, packet));
+                var encoded = new EncodedPacket(frame.retainedDuplicate(), compressionThreshold);
+                if (target.sendEncodedToClient(encoded)) {
+                    ++count;
+                } else {
+                    encoded.frame.release();
+                }
+            }
+        } finally {
+            for (var frame : frames.values()) {
+                frame.release();
+            }
+            packet.release();
+        }
+        return count;
+    }
+
+    private static ByteBuf encode(int compressionThreshold, ByteBuf packet) {
+        if (compressionThreshold < 0) {
+            return packet.retainedDuplicate();
+        }
+
+        var in = packet.duplicate();
+        var frame = ByteBufAllocator.DEFAULT.buffer();
+        try {
+            PacketCompressionUtils.compress(compressionThreshold, PacketUtils.readVarint(in), in, frame);
+        } catch (Throwable exception) {
+            frame.release();
+            throw exception;
+        }
+        return frame;
+    }
+}
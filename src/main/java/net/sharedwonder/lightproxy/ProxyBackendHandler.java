@@ -16,10 +16,8 @@
 
 package net.sharedwonder.lightproxy;
 
-import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -29,10 +27,13 @@ import org.apache.logging.log4j.Logger;
 
 @ChannelHandler.Sharable
 final class ProxyBackendHandler extends ProxyChannelHandler {
+    private final ProxyServerHandler serverHandler;
+
     private final Channel clientBoundChannel;
 
-    ProxyBackendHandler(ConnectionContext connectionContext, Channel clientBoundChannel) {
+    ProxyBackendHandler(ConnectionContext connectionContext, ProxyServerHandler serverHandler, Channel clientBoundChannel) {
         super(connectionContext, PacketType.S2C);
+        this.serverHandler = serverHandler;
         this.clientBoundChannel = clientBoundChannel;
     }
 
@@ -51,8 +52,13 @@ final class ProxyBackendHandler extends ProxyChannelHandler {
     }
 
     @Override
-    ChannelFuture sendMessage(ByteBuf message) {
-        return clientBoundChannel.writeAndFlush(message);
+    Channel peerChannel() {
+        return clientBoundChannel;
+    }
+
+    @Override
+    ProxyChannelHandler peerHandler() {
+        return serverHandler;
     }
 
     private static final Logger LOGGER = LogManager.getLogger(ProxyBackendHandler.class);
@@ -16,17 +16,30 @@
 
 package net.sharedwonder.lightproxy;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.EncoderException;
 import net.sharedwonder.lightproxy.crypt.EncryptionContext;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
 import net.sharedwonder.lightproxy.packet.PacketCompressionUtils;
+import net.sharedwonder.lightproxy.packet.PacketContinuation;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketType;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
+import net.sharedwonder.lightproxy.util.ConnectionState;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.jspecify.annotations.Nullable;
 
 abstract sealed class ProxyChannelHandler extends ChannelInboundHandlerAdapter permits ProxyBackendHandler, ProxyServerHandler {
@@ -35,191 +48,862 @@ abstract sealed class ProxyChannelHandler extends ChannelInboundHandlerAdapter p
     private final PacketType packetType;
 
     @Nullable
-    private ByteBuf buffer;
+    private ByteBuf cumulation;
 
-    private int remainingUnreadSize = 0;
+    @Nullable
+    private CompletableFuture<? extends PacketContinuation> deferredHandle;
+
+    private int deferredPacketId;
+
+    private int streamingRemaining;
+
+    @Nullable
+    private ByteBuf suspendedInput;
+
+    private final FrameWriter frameWriter = new FrameWriter();
+
+    private final FrameWriter scratchWriter = new FrameWriter();
+
+    private final FrameOutput output = new FrameOutput();
+
+    private final AtomicBoolean injectionScheduled = new AtomicBoolean();
+
+    private final boolean directBuffers;
+
+    private final boolean tunnelEnabled;
+
+    private final int cutThroughThreshold;
+
+    private final boolean consolidateFlushes;
+
+    private final int maxPendingFlushBytes;
+
+    private final int maxPendingFlushWrites;
+
+    @Nullable
+    private ChannelHandlerContext handlerContext;
+
+    private int readSuspendReasons;
+
+    private boolean reading;
+
+    private int pendingFlushBytes;
+
+    private int pendingFlushWrites;
+
+    @Nullable
+    private EncryptionContext alignedEncryptionContext;
+
+    private boolean outputAligned;
+
+    private boolean tunneled;
 
     ProxyChannelHandler(ConnectionContext connectionContext, PacketType packetType) {
         this.connectionContext = connectionContext;
         this.packetType = packetType;
+
+        var config = connectionContext.getConfig();
+        directBuffers = config.getDirectBuffers();
+        tunnelEnabled = config.getTunnelAfterLogin();
+        cutThroughThreshold = config.getCutThroughThreshold();
+        consolidateFlushes = config.getFlushConsolidation();
+        maxPendingFlushBytes = config.getFlushMaxPendingBytes();
+        maxPendingFlushWrites = config.getFlushMaxPendingWrites();
+    }
+
+    @Nullable
+    abstract Channel peerChannel();
+
+    @Nullable
+    abstract ProxyChannelHandler peerHandler();
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext context) {
+        handlerContext = context;
+        if (readSuspendReasons != 0) {
+            context.channel().config().setAutoRead(false);
+        }
+        connectionContext.setPacketInjector(packetType, this::scheduleInjection);
+        if (hasAttachedPackets()) {
+            scheduleInjection();
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext context) {
+        var peerHandler = peerHandler();
+        if (peerHandler != null) {
+            if (context.channel().isWritable()) {
+                peerHandler.resumeRead(SUSPEND_BACKPRESSURE);
+            } else {
+                peerHandler.suspendRead(SUSPEND_BACKPRESSURE);
+            }
+        }
+        context.fireChannelWritabilityChanged();
     }
 
-    abstract ChannelFuture sendMessage(ByteBuf message);
+    void suspendRead(int reason) {
+        var previous = readSuspendReasons;
+        readSuspendReasons |= reason;
+        if (previous == 0 && handlerContext != null) {
+            handlerContext.channel().config().setAutoRead(false);
+        }
+    }
+
+    void resumeRead(int reason) {
+        var previous = readSuspendReasons;
+        readSuspendReasons &= ~reason;
+        if (previous != 0 && readSuspendReasons == 0 && handlerContext != null) {
+            handlerContext.channel().config().setAutoRead(true);
+        }
+    }
 
     @Override
     public void channelRead(ChannelHandlerContext context, Object message) throws Exception {
         var in = (ByteBuf) message;
+        if (!in.isReadable()) {
+            in.release();
+            return;
+        }
+
+        reading = true;
+        if (tunneled) {
+            forward(in);
+            return;
+        }
+
+        var allocator = context.alloc();
+        if (deferredHandle != null) {
+            suspendedInput = suspendedInput == null ? in : CUMULATOR.cumulate(allocator, suspendedInput, in);
+            return;
+        }
+
+        var encryptionContext = connectionContext.getEncryptionContext();
+        cumulate(allocator, encryptionContext, in);
+        process(context, encryptionContext, allocator.compositeBuffer(MAX_OUT_COMPONENTS));
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext context) {
+        reading = false;
+        if (pendingFlushWrites > 0) {
+            flushPeer();
+        }
+        context.fireChannelReadComplete();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext context) {
+        if (cumulation != null) {
+            cumulation.release();
+            cumulation = null;
+        }
+        if (suspendedInput != null) {
+            suspendedInput.release();
+            suspendedInput = null;
+        }
+        releaseAttachedPackets();
+    }
+
+    void scheduleInjection() {
+        var context = handlerContext;
+        if (context != null && injectionScheduled.compareAndSet(false, true)) {
+            context.executor().execute(this::injectAttachedPackets);
+        }
+    }
+
+    private void injectAttachedPackets() {
+        injectionScheduled.set(false);
+        var context = handlerContext;
+        assert context != null;
+        if (!context.channel().isActive()) {
+            releaseAttachedPackets();
+            return;
+        }
+        if (tunneled) {
+            // Lost the race with the switch to the tunnel mode, the packets can no longer be framed into the stream
+            var dropped = releaseAttachedPackets();
+            if (dropped > 0) {
+                LOGGER.error("Dropped " + dropped + " attached packet(s) sent after switching to the tunnel mode, direction: " + packetType + ", client address: " + connectionContext.getClientAddress());
+            }
+            return;
+        }
+        if (deferredHandle != null || streamingRemaining > 0) {
+            return;
+        }
+        var peerChannel = peerChannel();
+        if (peerChannel == null || !peerChannel.isActive()) {
+            return;
+        }
+
+        var encryptionContext = connectionContext.getEncryptionContext();
+        var out = context.alloc().compositeBuffer(MAX_OUT_COMPONENTS);
         try {
-            if (!in.isReadable()) {
-                return;
+            appendAttachedPackets(context.alloc(), encryptionContext, out);
+        } catch (Throwable exception) {
+            out.release();
+            context.pipeline().fireExceptionCaught(exception);
+            return;
+        }
+        send(encryptionContext, out);
+    }
+
+    private boolean hasAttachedPackets() {
+        return packetType == PacketType.C2S ? !connectionContext.getAttachedC2SPackets().isEmpty() : connectionContext.hasAttachedS2CPackets();
+    }
+
+    private int releaseAttachedPackets() {
+        var count = 0;
+        if (packetType == PacketType.C2S) {
+            ByteBuf packet;
+            while ((packet = connectionContext.getAttachedC2SPackets().poll()) != null) {
+                packet.release();
+                ++count;
+            }
+        } else {
+            EncodedPacket packet;
+            while ((packet = connectionContext.pollAttachedS2CPacket()) != null) {
+                packet.frame.release();
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private void cumulate(ByteBufAllocator allocator, EncryptionContext encryptionContext, ByteBuf in) {
+        if (encryptionContext.isEnabled()) {
+            try {
+                encryptionContext.decrypt(packetType, in);
+            } catch (Throwable exception) {
+                in.release();
+                throw exception;
             }
+        }
+        cumulation = cumulation == null ? in : CUMULATOR.cumulate(allocator, cumulation, in);
+    }
 
-            var encryptionContext = connectionContext.getEncryptionContext();
-            var messageBuffer = encryptionContext.isEnabled() ? encryptionContext.decrypt(packetType, in) : in;
-            var allocator = context.alloc();
+    private void process(ChannelHandlerContext context, EncryptionContext encryptionContext, CompositeByteBuf out) throws Exception {
+        if (encryptionContext != alignedEncryptionContext) {
+            alignedEncryptionContext = encryptionContext;
+            outputAligned = true;
+        }
 
-            if (remainingUnreadSize > 0) {
-                var available = messageBuffer.readableBytes();
-                assert buffer != null;
-                buffer.writeBytes(messageBuffer);
-                remainingUnreadSize -= available;
-                if (remainingUnreadSize > 0) {
-                    return;
+        var allocator = context.alloc();
+        try {
+            if (cumulation != null) {
+                decode(allocator, out);
+            }
+            if (streamingRemaining == 0 && deferredHandle == null) {
+                appendAttachedPackets(allocator, encryptionContext, out);
+            }
+        } catch (Throwable exception) {
+            out.release();
+            throw exception;
+        } finally {
+            discardReadBytes();
+        }
+
+        send(encryptionContext, out);
+
+        if (deferredHandle != null) {
+            suspend(context, deferredHandle);
+        } else if (tunnelEnabled && canTunnel(encryptionContext)) {
+            tunneled = true;
+            connectionContext.markTunneled(packetType);
+            LOGGER.debug(() -> "Switched to the tunnel mode, direction: " + packetType + ", client address: " + connectionContext.getClientAddress());
+        }
+    }
+
+    private boolean canTunnel(EncryptionContext encryptionContext) {
+        if (!connectionContext.isTunnelAllowed() || connectionContext.getConnectionState() != ConnectionState.PLAY) {
+            return false;
+        }
+        if (cumulation != null || suspendedInput != null) {
+            return false;
+        }
+        if (encryptionContext.isEnabled() && (!outputAligned || encryptionContext != connectionContext.getEncryptionContext())) {
+            return false;
+        }
+        if (connectionContext.getCompressionThreshold() >= 0 && !connectionContext.isEnabledCompressionForClient()) {
+            return false;
+        }
+        if (!connectionContext.getExternalContexts().isEmpty() || connectionContext.hasPacketHandlers(ConnectionState.PLAY)) {
+            return false;
+        }
+        return !hasAttachedPackets();
+    }
+
+    private void suspend(ChannelHandlerContext context, CompletableFuture<? extends PacketContinuation> future) {
+        setReadSuspended(true);
+        future.whenComplete((continuation, cause) -> context.executor().execute(() -> {
+            try {
+                resume(context, continuation, cause);
+            } catch (Throwable exception) {
+                context.pipeline().fireExceptionCaught(exception);
+            }
+        }));
+    }
+
+    private void resume(ChannelHandlerContext context, @Nullable PacketContinuation continuation, @Nullable Throwable cause) throws Exception {
+        deferredHandle = null;
+        if (!context.channel().isActive()) {
+            return;
+        }
+        if (cause != null) {
+            context.pipeline().fireExceptionCaught(cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause);
+            return;
+        }
+        assert continuation != null;
+
+        var encryptionContext = connectionContext.getEncryptionContext();
+        var allocator = context.alloc();
+        var out = allocator.compositeBuffer(MAX_OUT_COMPONENTS);
+        var written = newBuffer(allocator);
+        try {
+            resumeHandle(allocator, continuation, written);
+        } catch (Throwable exception) {
+            written.release();
+            out.release();
+            throw exception;
+        }
+        out.addComponent(true, written);
+        outputAligned = false;
+        send(encryptionContext, out);
+
+        encryptionContext = connectionContext.getEncryptionContext();
+        if (suspendedInput != null) {
+            var in = suspendedInput;
+            suspendedInput = null;
+            cumulate(allocator, encryptionContext, in);
+        }
+        process(context, encryptionContext, allocator.compositeBuffer(MAX_OUT_COMPONENTS));
+
+        if (deferredHandle == null) {
+            setReadSuspended(false);
+        }
+    }
+
+    private void resumeHandle(ByteBufAllocator allocator, PacketContinuation continuation, ByteBuf out) throws Exception {
+        var transformed = allocator.heapBuffer();
+        try {
+            var flag = continuation.resume(connectionContext, transformed);
+            if (flag == HandleFlag.TRANSFORMED) {
+                var packet = allocator.heapBuffer();
+                try {
+                    PacketUtils.writeVarint(packet, PacketUtils.calcVarintSize(deferredPacketId) + transformed.readableBytes());
+                    PacketUtils.writeVarint(packet, deferredPacketId);
+                    packet.writeBytes(transformed);
+                    encode(packet, out);
+                } finally {
+                    packet.release();
                 }
-            } else {
-                buffer = allocator.heapBuffer();
-                buffer.writeBytes(messageBuffer);
+            } else if (flag != HandleFlag.BLOCKED) {
+                throw new IllegalStateException("Unsupported result of a deferred packet handler: " + flag);
             }
+        } finally {
+            transformed.release();
+        }
+    }
+
+    private void encode(ByteBuf packet, ByteBuf out) {
+        var compressionThreshold = connectionContext.getCompressionThreshold();
+        if (compressionThreshold >= 0 && (packetType == PacketType.C2S || connectionContext.isEnabledCompressionForClient())) {
+            PacketCompressionUtils.compress(compressionThreshold, PacketUtils.readVarint(packet), packet, out);
+        } else {
+            out.writeBytes(packet);
+        }
+    }
+
+    private void setReadSuspended(boolean suspended) {
+        var peerHandler = peerHandler();
+        if (suspended) {
+            suspendRead(SUSPEND_DEFERRED);
+            if (peerHandler != null) {
+                peerHandler.suspendRead(SUSPEND_DEFERRED);
+            }
+        } else {
+            resumeRead(SUSPEND_DEFERRED);
+            if (peerHandler != null) {
+                peerHandler.resumeRead(SUSPEND_DEFERRED);
+            }
+        }
+    }
+
+    private void decode(ByteBufAllocator allocator, CompositeByteBuf out) throws Exception {
+        var buffer = cumulation;
+        assert buffer != null;
 
-            var out = allocator.heapBuffer();
-            var complete = true;
+        var passThroughStart = -1;
+        if (streamingRemaining > 0) {
+            var length = Math.min(streamingRemaining, buffer.readableBytes());
+            passThroughStart = buffer.readerIndex();
+            buffer.skipBytes(length);
+            streamingRemaining -= length;
+        }
+
+        var writer = frameWriter.reset(allocator, out);
+        try {
             while (buffer.isReadable()) {
-                if (!handle(allocator, out)) {
-                    complete = false;
+                var frameStart = buffer.readerIndex();
+                var size = PacketUtils.readFrameSize(buffer);
+                if (size < 0 || size > buffer.readableBytes()) {
+                    if (size > 0 && canStream(buffer, size)) {
+                        writer.flush();
+                        if (passThroughStart < 0) {
+                            passThroughStart = frameStart;
+                        }
+                        streamingRemaining = size - buffer.readableBytes();
+                        buffer.readerIndex(buffer.writerIndex());
+                    } else {
+                        buffer.readerIndex(frameStart);
+                    }
                     break;
                 }
+
+                var frameEnd = buffer.readerIndex() + size;
+                if (isPassThrough(buffer, size)) {
+                    writer.flush();
+                    if (passThroughStart < 0) {
+                        passThroughStart = frameStart;
+                    }
+                } else {
+                    if (passThroughStart >= 0) {
+                        out.addComponent(true, buffer.retainedSlice(passThroughStart, frameStart - passThroughStart));
+                        passThroughStart = -1;
+                    }
+                    handleFrame(allocator, frameStart, size, buffer, writer);
+                }
+                buffer.readerIndex(frameEnd);
+
+                if (deferredHandle != null) {
+                    break;
+                }
+            }
+        } catch (Throwable exception) {
+            writer.discard();
+            throw exception;
+        }
+
+        if (passThroughStart >= 0) {
+            out.addComponent(true, buffer.retainedSlice(passThroughStart, buffer.readerIndex() - passThroughStart));
+        } else {
+            writer.flush();
+        }
+    }
+
+    private boolean canStream(ByteBuf buffer, int size) {
+        return cutThroughThreshold >= 0 && size >= cutThroughThreshold && buffer.readableBytes() >= MIN_STREAMING_PEEK_SIZE &&
+            isPassThrough(buffer, buffer.readableBytes());
+    }
+
+    private boolean isPassThrough(ByteBuf buffer, int size) {
+        if (size == 0) {
+            return false;
+        }
+
+        int id;
+        if (connectionContext.getCompressionThreshold() < 0) {
+            id = PacketUtils.getVarint(buffer, buffer.readerIndex());
+        } else if (connectionContext.isEnabledCompressionForClient()) {
+            id = PacketCompressionUtils.peekPacketId(buffer, size);
+            if (id < 0) {
+                return false;
             }
+        } else {
+            return false;
+        }
+        return connectionContext.getPacketHandler(packetType, id) == null;
+    }
 
-            if (packetType == PacketType.S2C) {
-                var attachedS2CPackets = connectionContext.getAttachedS2CPackets();
-                while (!attachedS2CPackets.isEmpty()) {
-                    var packet = attachedS2CPackets.poll();
-                    if (connectionContext.isEnabledCompressionForClient()) {
-                        PacketCompressionUtils.compress(connectionContext.getCompressionThreshold(), PacketUtils.readVarint(packet), packet, out);
+    private void appendAttachedPackets(ByteBufAllocator allocator, EncryptionContext encryptionContext, CompositeByteBuf out) {
+        ByteBuf written = null;
+        try {
+            if (packetType == PacketType.C2S) {
+                var attachedPackets = connectionContext.getAttachedC2SPackets();
+                ByteBuf packet;
+                while ((packet = attachedPackets.poll()) != null) {
+                    try {
+                        if (written == null) {
+                            written = newBuffer(allocator);
+                        }
+                        encode(packet, written);
+                    } finally {
                         packet.release();
-                    } else {
-                        out.writeBytes(packet);
                     }
                 }
-            } else if (packetType == PacketType.C2S) {
-                var attachedC2SPackets = connectionContext.getAttachedC2SPackets();
-                while (!attachedC2SPackets.isEmpty()) {
-                    var packet = attachedC2SPackets.poll();
-                    PacketCompressionUtils.compress(connectionContext.getCompressionThreshold(), PacketUtils.readVarint(packet), packet, out);
-                    packet.release();
-                }
             } else {
-                throw new AssertionError();
+                EncodedPacket packet;
+                while ((packet = connectionContext.pollAttachedS2CPacket()) != null) {
+                    written = appendEncoded(allocator, encryptionContext, packet, out, written);
+                }
+            }
+        } catch (Throwable exception) {
+            if (written != null) {
+                written.release();
+            }
+            throw exception;
+        }
+
+        if (written != null) {
+            outputAligned = false;
+            out.addComponent(true, written);
+        }
+    }
+
+    @Nullable
+    private ByteBuf appendEncoded(ByteBufAllocator allocator, EncryptionContext encryptionContext, EncodedPacket packet, CompositeByteBuf out, @Nullable ByteBuf written) {
+        outputAligned = false;
+        var frame = packet.frame;
+        try {
+            var compressionThreshold = connectionContext.isEnabledCompressionForClient() ? connectionContext.getCompressionThreshold() : -1;
+            if (packet.compressionThreshold != compressionThreshold) {
+                if (written == null) {
+                    written = newBuffer(allocator);
+                }
+                reencode(allocator, packet, written);
+                return written;
+            }
+            if (encryptionContext.isEnabled()) {
+                // The frame is shared with other connections while the output is encrypted in place
+                if (written == null) {
+                    written = newBuffer(allocator);
+                }
+                written.writeBytes(frame, frame.readerIndex(), frame.readableBytes());
+                return written;
             }
 
-            send(encryptionContext, out);
-            if (complete) {
-                buffer.release();
+            if (written != null) {
+                out.addComponent(true, written);
             }
+            out.addComponent(true, frame.retain());
+            return null;
         } finally {
-            in.release();
+            frame.release();
         }
     }
 
-    @Override
-    public void channelInactive(ChannelHandlerContext context) {
-        if (buffer != null && buffer.refCnt() > 0) {
-            remainingUnreadSize = 0;
-            buffer.release();
+    private void reencode(ByteBufAllocator allocator, EncodedPacket encoded, ByteBuf out) {
+        var frame = encoded.frame.duplicate();
+        if (encoded.compressionThreshold < 0) {
+            encode(frame, out);
+            return;
+        }
+
+        var body = allocator.heapBuffer();
+        var packet = allocator.heapBuffer();
+        try {
+            var size = PacketCompressionUtils.decompress(PacketUtils.readVarint(frame), frame, body);
+            PacketUtils.writeVarint(packet, size);
+            packet.writeBytes(body);
+            encode(packet, out);
+        } finally {
+            body.release();
+            packet.release();
+        }
+    }
+
+    private void discardReadBytes() {
+        if (cumulation == null) {
+            return;
+        }
+        if (!cumulation.isReadable()) {
+            cumulation.release();
+            cumulation = null;
+        } else if (cumulation.refCnt() == 1) {
+            cumulation.discardSomeReadBytes();
         }
     }
 
     private void send(EncryptionContext encryptionContext, ByteBuf message) {
-        ByteBuf out;
-        if (encryptionContext.isEnabled()) {
-            out = encryptionContext.encrypt(packetType, message);
+        if (!message.isReadable()) {
             message.release();
-        } else {
-            out = message;
+            return;
         }
-        sendMessage(out).addListener((ChannelFutureListener) listener -> {
-            if (!listener.isSuccess()) {
-                listener.channel().close();
+
+        if (encryptionContext.isEnabled()) {
+            try {
+                encryptionContext.encrypt(packetType, message);
+            } catch (Throwable exception) {
+                message.release();
+                throw exception;
             }
-        });
+        }
+        forward(message);
     }
 
-    private boolean handle(ByteBufAllocator allocator, ByteBuf out) throws Exception {
-        assert buffer != null;
-        var startIndex = buffer.readerIndex();
-        int size;
-        try {
-            size = PacketUtils.readVarint(buffer);
-        } catch (IndexOutOfBoundsException ignored) {
-            remainingUnreadSize = 1;
-            buffer.readerIndex(startIndex);
+    private void forward(ByteBuf message) {
+        var peerChannel = peerChannel();
+        if (peerChannel == null) {
+            // Nothing is relayed when the proxy answers the connection itself
+            message.release();
+            return;
+        }
 
-            return false;
+        ChannelFuture future;
+        if (consolidateFlushes && reading) {
+            pendingFlushBytes += message.readableBytes();
+            ++pendingFlushWrites;
+            future = peerChannel.write(message);
+            if (pendingFlushBytes >= maxPendingFlushBytes || pendingFlushWrites >= maxPendingFlushWrites) {
+                flushPeer();
+            }
+        } else {
+            future = peerChannel.writeAndFlush(message);
         }
+        future.addListener(CLOSE_ON_FAILURE);
+    }
 
-        var endIndex = buffer.readerIndex() + size;
-        var available = buffer.readableBytes();
-        if (size > available) {
-            remainingUnreadSize = size - available;
-            buffer.readerIndex(startIndex);
+    private void flushPeer() {
+        pendingFlushBytes = 0;
+        pendingFlushWrites = 0;
+        var peerChannel = peerChannel();
+        if (peerChannel != null) {
+            peerChannel.flush();
+        }
+    }
 
-            return false;
+    private void handleFrame(ByteBufAllocator allocator, int frameStart, int size, ByteBuf buffer, FrameWriter writer) throws Exception {
+        var bodyStart = buffer.readerIndex();
+        var frameSize = bodyStart + size - frameStart;
+        var compressionThreshold = connectionContext.getCompressionThreshold();
+        if (compressionThreshold < 0) {
+            if (handle(size, buffer, writer) == HandleFlag.PASSED) {
+                writer.write(buffer, frameStart, frameSize);
+            } else {
+                outputAligned = false;
+            }
+            return;
         }
 
-        if (connectionContext.getCompressionThreshold() >= 0) {
+        var arena = ScratchArena.get();
+        ByteBuf inBuffer = null;
+        FrameWriter packetWriter = null;
+        try {
             if (connectionContext.isEnabledCompressionForClient()) {
-                var inBuffer = allocator.heapBuffer();
+                inBuffer = arena.packetBuffer(allocator, directBuffers);
                 var inPacketSize = PacketCompressionUtils.decompress(size, buffer, inBuffer);
-                var outBuffer = allocator.heapBuffer();
-                handle(allocator, inPacketSize, inBuffer, outBuffer);
-                if (outBuffer.isReadable()) {
-                    PacketCompressionUtils.compress(connectionContext.getCompressionThreshold(), PacketUtils.readVarint(outBuffer), outBuffer, out);
+                packetWriter = scratchWriter.reset(allocator, arena.packetComposite(allocator));
+                if (handle(inPacketSize, inBuffer, packetWriter) == HandleFlag.PASSED) {
+                    writer.write(buffer, frameStart, frameSize);
+                    return;
+                }
+            } else if (packetType == PacketType.S2C) {
+                inBuffer = arena.packetBuffer(allocator, directBuffers);
+                var inPacketSize = PacketCompressionUtils.decompress(size, buffer, inBuffer);
+                var packetStart = inBuffer.readerIndex();
+                if (handle(inPacketSize, inBuffer, writer) == HandleFlag.PASSED) {
+                    PacketUtils.writeVarint(writer.buffer(), inPacketSize);
+                    writer.write(inBuffer, packetStart, inPacketSize);
+                }
+            } else if (packetType == PacketType.C2S) {
+                packetWriter = scratchWriter.reset(allocator, arena.packetComposite(allocator));
+                if (handle(size, buffer, packetWriter) == HandleFlag.PASSED) {
+                    PacketCompressionUtils.compress(compressionThreshold, size, buffer.slice(bodyStart, size), writer.buffer());
                 }
-                inBuffer.release();
-                outBuffer.release();
             } else {
-                if (packetType == PacketType.S2C) {
-                    var inBuffer = allocator.heapBuffer();
-                    var inPacketSize = PacketCompressionUtils.decompress(size, buffer, inBuffer);
-                    handle(allocator, inPacketSize, inBuffer, out);
-                    inBuffer.release();
-                } else if (packetType == PacketType.C2S) {
-                    var outBuffer = allocator.heapBuffer();
-                    handle(allocator, size, buffer, outBuffer);
-                    if (outBuffer.isReadable()) {
-                        PacketCompressionUtils.compress(connectionContext.getCompressionThreshold(), PacketUtils.readVarint(outBuffer), outBuffer, out);
-                    }
-                    outBuffer.release();
-                } else {
-                    throw new AssertionError();
+                throw new AssertionError();
+            }
+            outputAligned = false;
+
+            if (packetWriter != null) {
+                packetWriter.flush();
+                var packet = packetWriter.out;
+                if (packet.isReadable()) {
+                    PacketCompressionUtils.compress(compressionThreshold, PacketUtils.readVarint(packet), packet, writer.buffer());
                 }
             }
-        } else {
-            handle(allocator, size, buffer, out);
+        } finally {
+            if (inBuffer != null) {
+                arena.recycle(inBuffer);
+            }
+            if (packetWriter != null) {
+                packetWriter.discard();
+                arena.recycle(packetWriter.out);
+            }
         }
-
-        buffer.readerIndex(endIndex);
-        return true;
     }
 
-    private void handle(ByteBufAllocator allocator, int packetSize, ByteBuf in, ByteBuf out) throws Exception {
+    private HandleFlag handle(int packetSize, ByteBuf in, FrameWriter writer) throws Exception {
         var headIndex = in.readerIndex();
         var id = PacketUtils.readVarint(in);
-        var idLength = in.readerIndex() - headIndex;
-        var handler = packetType.getPacketHandler(connectionContext.getConnectionState(), id);
-
+        var handler = connectionContext.getPacketHandler(packetType, id);
         if (handler == null) {
-            PacketUtils.writeVarint(out, packetSize);
-            PacketUtils.writeVarint(out, id);
-            out.writeBytes(in, packetSize - idLength);
-            return;
+            return HandleFlag.PASSED;
         }
 
-        var start = in.readerIndex();
-        var transformed = allocator.heapBuffer();
-        var flag = handler.handle(connectionContext, in, transformed);
+        output.reset(writer, id);
+        HandleFlag flag;
+        try {
+            flag = handler.handle(connectionContext, in.slice(in.readerIndex(), packetSize - (in.readerIndex() - headIndex)), output);
+            if (flag == HandleFlag.DEFERRED) {
+                var future = connectionContext.takeDeferredHandle();
+                if (future == null) {
+                    throw new IllegalStateException("Packet handler returned DEFERRED without deferring: " + handler.getClass().getName());
+                }
+                deferredHandle = future;
+                deferredPacketId = id;
+            }
+        } catch (Throwable exception) {
+            output.discard();
+            throw exception;
+        }
 
-        if (flag == HandleFlag.PASSED) {
-            PacketUtils.writeVarint(out, packetSize);
-            PacketUtils.writeVarint(out, id);
-            out.writeBytes(in, start, packetSize - idLength);
-        } else if (flag == HandleFlag.TRANSFORMED) {
-            var size = idLength + transformed.readableBytes();
-            PacketUtils.writeVarint(out, size);
-            PacketUtils.writeVarint(out, id);
-            out.writeBytes(transformed);
+        if (flag == HandleFlag.TRANSFORMED) {
+            output.commit();
+        } else {
+            output.discard();
+        }
+        return flag;
+    }
+
+    private ByteBuf newBuffer(ByteBufAllocator allocator) {
+        return directBuffers ? allocator.directBuffer() : allocator.heapBuffer();
+    }
+
+    static final int SUSPEND_CONNECTING = 1;
+
+    static final int SUSPEND_DEFERRED = 1 << 1;
+
+    static final int SUSPEND_BACKPRESSURE = 1 << 2;
+
+    private static final ByteToMessageDecoder.Cumulator CUMULATOR = ByteToMessageDecoder.MERGE_CUMULATOR;
+
+    private static final int MAX_OUT_COMPONENTS = 1024;
+
+    private static final ChannelFutureListener CLOSE_ON_FAILURE = future -> {
+        if (!future.isSuccess()) {
+            future.channel().close();
+        }
+    };
+
+    private static final int MIN_SLICE_SIZE = 1024;
+
+    private static final int MIN_STREAMING_PEEK_SIZE = 64;
+
+    private static final Logger LOGGER = LogManager.getLogger(ProxyChannelHandler.class);
+
+    private final class FrameWriter {
+        ByteBufAllocator allocator;
+
+        CompositeByteBuf out;
+
+        @Nullable
+        private ByteBuf written;
+
+        FrameWriter reset(ByteBufAllocator allocator, CompositeByteBuf out) {
+            this.allocator = allocator;
+            this.out = out;
+            written = null;
+            return this;
         }
 
-        transformed.release();
+        ByteBuf buffer() {
+            if (written == null) {
+                written = newBuffer(allocator);
+            }
+            return written;
+        }
+
+        void write(ByteBuf buffer, int index, int length) {
+            if (length >= MIN_SLICE_SIZE) {
+                append(buffer.retainedSlice(index, length));
+            } else {
+                buffer().writeBytes(buffer, index, length);
+            }
+        }
+
+        void append(ByteBuf buffer) {
+            flush();
+            out.addComponent(true, buffer);
+        }
+
+        void flush() {
+            if (written != null) {
+                if (written.isReadable()) {
+                    out.addComponent(true, written);
+                } else {
+                    written.release();
+                }
+                written = null;
+            }
+        }
+
+        void discard() {
+            if (written != null) {
+                written.release();
+                written = null;
+            }
+        }
+    }
+
+    private static final class FrameOutput implements PacketOutput {
+        private final ArrayList<ByteBuf> appended = new ArrayList<>();
+
+        @Nullable
+        private FrameWriter writer;
+
+        @Nullable
+        private ByteBuf buffer;
+
+        private int packetId;
+
+        private int headerIndex;
+
+        void reset(FrameWriter writer, int packetId) {
+            this.writer = writer;
+            this.packetId = packetId;
+            buffer = null;
+        }
+
+        @Override
+        public ByteBuf buffer() {
+            if (buffer == null) {
+                assert writer != null;
+                buffer = writer.buffer();
+                headerIndex = buffer.writerIndex();
+                buffer.writeMedium(0);
+                PacketUtils.writeVarint(buffer, packetId);
+            }
+            return buffer;
+        }
+
+        @Override
+        public void append(ByteBuf buffer) {
+            appended.add(buffer);
+        }
+
+        void commit() {
+            var buffer = buffer();
+            assert writer != null;
+
+            var size = buffer.writerIndex() - headerIndex - 3;
+            for (var component : appended) {
+                size += component.readableBytes();
+            }
+            if (size > PacketUtils.VARINT21_MAX_VALUE) {
+                discard();
+                throw new EncoderException("Transformed packet is too large: " + size);
+            }
+            PacketUtils.setVarint21(buffer, headerIndex, size);
+
+            for (var component : appended) {
+                writer.append(component);
+            }
+            appended.clear();
+            this.buffer = null;
+            writer = null;
+        }
+
+        void discard() {
+            if (buffer != null) {
+                buffer.writerIndex(headerIndex);
+                buffer = null;
+            }
+            for (var component : appended) {
+                component.release();
+            }
+            appended.clear();
+            writer = null;
+        }
     }
 }
@@ -17,15 +17,16 @@
 package net.sharedwonder.lightproxy;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOption;
 import net.sharedwonder.lightproxy.packet.PacketType;
+import net.sharedwonder.lightproxy.util.ConnectionState;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jspecify.annotations.Nullable;
@@ -34,6 +35,9 @@ final class ProxyServerHandler extends ProxyChannelHandler {
     @Nullable
     private Channel serverBoundChannel;
 
+    @Nullable
+    private ProxyBackendHandler backendHandler;
+
     ProxyServerHandler(LightProxy lightProxy) {
         super(new ConnectionContext(lightProxy), PacketType.C2S);
     }
@@ -41,54 +45,126 @@ final class ProxyServerHandler extends ProxyChannelHandler {
     @Override
     public void channelActive(ChannelHandlerContext context) {
         var channel = context.channel();
-        channel.config().setAutoRead(false);
-
         connectionContext.setClientAddress(((InetSocketAddress) channel.remoteAddress()).getAddress().getHostAddress());
 
+        if (connectionContext.getConfig().getDeferBackendConnect() || connectionContext.getStatusCache().isEnabled()) {
+            connectionContext.setBackendConnector(() -> onHandshake(channel));
+        } else {
+            connect(channel);
+        }
+        connectionContext.onConnect();
+    }
+
+    private CompletableFuture<Void> onHandshake(Channel channel) {
+        connectionContext.setBackendConnector(null);
+
+        var policy = ConnectionContext.getBackendConnectPolicy();
+        var decision = policy == null ? BackendConnectPolicy.Decision.CONNECT : policy.decide(connectionContext);
+        var statusCache = connectionContext.getStatusCache();
+        if (decision == BackendConnectPolicy.Decision.CONNECT && statusCache.isEnabled() && connectionContext.getConnectionState() == ConnectionState.STATUS) {
+            var status = statusCache.getStatus(channel.eventLoop(), connectionContext.getProtocolVersion());
+            if (status != null) {
+                connectionContext.setLocalStatusResponse(status);
+                decision = BackendConnectPolicy.Decision.ANSWER_LOCALLY;
+            }
+        }
+
+        if (decision == BackendConnectPolicy.Decision.CONNECT) {
+            return connect(channel);
+        }
+        connectionContext.setPacketInjector(PacketType.S2C, () -> writeLocalReplies(channel));
+        writeLocalReplies(channel);
+        if (decision == BackendConnectPolicy.Decision.REJECT) {
+            return CompletableFuture.failedFuture(new ConnectionRejectedException("Rejected by the backend connect policy"));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Void> connect(Channel channel) {
+        suspendRead(SUSPEND_CONNECTING);
+
+        var transport = connectionContext.getTransport();
         var bootstrap = new Bootstrap();
         bootstrap.group(channel.eventLoop())
-            .channel(channel.getClass())
+            .channel(transport.getChannelClass())
             .option(ChannelOption.TCP_NODELAY, true)
-            .handler(new ProxyBackendHandler(connectionContext, channel));
+            .option(ChannelOption.WRITE_BUFFER_WATER_MARK, channel.config().getWriteBufferWaterMark())
+            .handler(backendHandler = new ProxyBackendHandler(connectionContext, this, channel));
+        transport.configureBackend(bootstrap, connectionContext.getConfig());
 
         var socketAddress = new InetSocketAddress(connectionContext.getRemoteAddress(), connectionContext.getRemotePort());
         var channelFuture = bootstrap.connect(socketAddress);
         serverBoundChannel = channelFuture.channel().pipeline().context(ProxyBackendHandler.class).channel();
 
-        connectionContext.onConnect();
+        var connection = new CompletableFuture<Void>();
         channelFuture.addListener((ChannelFutureListener) listener -> {
             if (listener.isSuccess()) {
-                channel.config().setAutoRead(true);
+                resumeRead(SUSPEND_CONNECTING);
+                scheduleInjection();
+                connection.complete(null);
             } else {
                 LOGGER.error("Failed to connect to the remote host: " + socketAddress);
                 if (channel.isActive()) {
                     channel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
                 }
                 connectionContext.onDisconnect();
+                connection.completeExceptionally(listener.cause());
             }
         });
+        return connection;
+    }
+
+    private void writeLocalReplies(Channel channel) {
+        // Connections answered locally never enable compression, so every frame is sent as it is
+        EncodedPacket packet;
+        while ((packet = connectionContext.pollAttachedS2CPacket()) != null) {
+            channel.write(packet.frame).addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+        }
+        channel.flush();
+    }
+
+    private void releaseLocalReplies() {
+        EncodedPacket packet;
+        while ((packet = connectionContext.pollAttachedS2CPacket()) != null) {
+            packet.frame.release();
+        }
     }
 
     @Override
     public void channelInactive(ChannelHandlerContext context) {
         super.channelInactive(context);
-        assert serverBoundChannel != null;
-        if (serverBoundChannel.isActive()) {
-            sendMessage(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        if (serverBoundChannel != null && serverBoundChannel.isActive()) {
+            serverBoundChannel.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+        }
+        if (serverBoundChannel == null) {
+            // Packets sent after this point have no channel to go to
+            connectionContext.setPacketInjector(PacketType.S2C, this::releaseLocalReplies);
+            releaseLocalReplies();
         }
         connectionContext.onDisconnect();
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext context, Throwable exception) {
+        if (exception instanceof ConnectionRejectedException) {
+            LOGGER.warn(() -> "Rejected a connection from " + connectionContext.getClientAddress() + ": " + exception.getMessage());
+            context.close();
+            return;
+        }
         LOGGER.error("Caught an exception in the proxy server handler", exception);
         context.close();
     }
 
     @Override
-    ChannelFuture sendMessage(ByteBuf message) {
-        assert serverBoundChannel != null;
-        return serverBoundChannel.writeAndFlush(message);
+    @Nullable
+    Channel peerChannel() {
+        return serverBoundChannel;
+    }
+
+    @Override
+    @Nullable
+    ProxyChannelHandler peerHandler() {
+        return backendHandler;
     }
 
     private static final Logger LOGGER = LogManager.getLogger(ProxyServerHandler.class);
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+final class ScratchArena {
+    @Nullable
+    private ByteBuf packetBuffer;
+
+    @Nullable
+    private CompositeByteBuf packetComposite;
+
+    private ScratchArena() {}
+
+    static ScratchArena get() {
+        return ARENA.get();
+    }
+
+    public static long getHighWaterMark() {
+        return HIGH_WATER_MARK.get();
+    }
+
+    ByteBuf packetBuffer(ByteBufAllocator allocator, boolean direct) {
+        var buffer = packetBuffer;
+        if (buffer == null || buffer.refCnt() != 1 || buffer.isDirect() != direct) {
+            if (buffer != null) {
+                buffer.release();
+            }
+            buffer = direct ? allocator.directBuffer(INITIAL_CAPACITY) : allocator.heapBuffer(INITIAL_CAPACITY);
+            packetBuffer = buffer;
+        }
+        return buffer.clear();
+    }
+
+    CompositeByteBuf packetComposite(ByteBufAllocator allocator) {
+        var composite = packetComposite;
+        if (composite == null || composite.refCnt() != 1) {
+            if (composite != null) {
+                composite.release();
+            }
+            composite = allocator.compositeBuffer(MAX_COMPONENTS);
+            packetComposite = composite;
+        }
+        return composite;
+    }
+
+    void recycle(ByteBuf buffer) {
+        if (buffer != packetBuffer) {
+            return;
+        }
+        HIGH_WATER_MARK.accumulate(buffer.writerIndex());
+
+        var capacity = buffer.capacity();
+        if (capacity > MAX_RETAINED_CAPACITY) {
+            LOGGER.debug(() -> "Released a scratch buffer after a spike, capacity: " + capacity + ", high-water mark: " + HIGH_WATER_MARK.get());
+            buffer.release();
+            packetBuffer = null;
+        }
+    }
+
+    void recycle(CompositeByteBuf composite) {
+        if (composite != packetComposite) {
+            return;
+        }
+        var size = composite.writerIndex();
+        HIGH_WATER_MARK.accumulate(size);
+
+        var components = composite.numComponents();
+        if (size > MAX_RETAINED_CAPACITY || components > MAX_RETAINED_COMPONENTS) {
+            LOGGER.debug(() -> "Released a scratch composite after a spike, size: " + size + ", components: " + components);
+            composite.release();
+            packetComposite = null;
+            return;
+        }
+        composite.removeComponents(0, components);
+        composite.clear();
+    }
+
+    private void releaseAll() {
+        if (packetBuffer != null) {
+            packetBuffer.release();
+            packetBuffer = null;
+        }
+        if (packetComposite != null) {
+            packetComposite.release();
+            packetComposite = null;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final int MAX_COMPONENTS = 1024;
+
+    private static final int MAX_RETAINED_COMPONENTS = 64;
+
+    private static final LongAccumulator HIGH_WATER_MARK = new LongAccumulator(Math::max, 0);
+
+    private static final Logger LOGGER = LogManager.getLogger(ScratchArena.class);
+
+    private static final FastThreadLocal<ScratchArena> ARENA = new FastThreadLocal<>() {
+        @Override
+        protected ScratchArena initialValue() {
+            return new ScratchArena();
+        }
+
+        @Override
+        protected void onRemoval(ScratchArena arena) {
+            arena.releaseAll();
+        }
+    };
+}
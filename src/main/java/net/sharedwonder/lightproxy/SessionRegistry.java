@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Index of the live connections of a proxy. Lookups never lock, and iteration is weakly consistent: it reflects
+ * the connections registered at some point during or since the creation of the iterator.
+ */
+public final class SessionRegistry {
+    private final Set<ConnectionContext> sessions = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<UUID, ConnectionContext> sessionsByUuid = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, ConnectionContext> sessionsByUsername = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Set<ConnectionContext>> sessionsByAddress = new ConcurrentHashMap<>();
+
+    public Collection<ConnectionContext> getSessions() {
+        return Collections.unmodifiableSet(sessions);
+    }
+
+    public Collection<ConnectionContext> getPlayers() {
+        return Collections.unmodifiableCollection(sessionsByUuid.values());
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getPlayerCount() {
+        return sessionsByUuid.size();
+    }
+
+    @Nullable
+    public ConnectionContext getByUuid(UUID uuid) {
+        return sessionsByUuid.get(uuid);
+    }
+
+    @Nullable
+    public ConnectionContext getByUsername(String username) {
+        return sessionsByUsername.get(username.toLowerCase(Locale.ROOT));
+    }
+
+    public Collection<ConnectionContext> getByAddress(String address) {
+        var contexts = sessionsByAddress.get(address);
+        return contexts == null ? Set.of() : Collections.unmodifiableSet(contexts);
+    }
+
+    void register(ConnectionContext context, String address) {
+        sessions.add(context);
+        sessionsByAddress.compute(address, (key, contexts) -> {
+            var result = contexts == null ? ConcurrentHashMap.<ConnectionContext>newKeySet() : contexts;
+            result.add(context);
+            return result;
+        });
+    }
+
+    void registerPlayer(ConnectionContext context, UUID uuid, @Nullable String username) {
+        if (!sessions.contains(context)) {
+            return;
+        }
+        sessionsByUuid.put(uuid, context);
+        if (username != null) {
+            sessionsByUsername.put(username.toLowerCase(Locale.ROOT), context);
+        }
+    }
+
+    void unregister(ConnectionContext context, @Nullable String address, @Nullable UUID uuid, @Nullable String username) {
+        if (!sessions.remove(context)) {
+            return;
+        }
+        if (uuid != null) {
+            sessionsByUuid.remove(uuid, context);
+        }
+        if (username != null) {
+            sessionsByUsername.remove(username.toLowerCase(Locale.ROOT), context);
+        }
+        if (address != null) {
+            sessionsByAddress.computeIfPresent(address, (key, contexts) -> {
+                contexts.remove(context);
+                return contexts.isEmpty() ? null : contexts;
+            });
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.DecoderException;
+import net.sharedwonder.lightproxy.packet.PacketUtils;
+import net.sharedwonder.lightproxy.util.ConnectionState;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+public final class StatusCache {
+    private final LightProxy lightProxy;
+
+    private final long ttlNanos;
+
+    // The remote server tailors the reported version to the protocol version of the request
+    private final Map<Integer, Slot> slots = new ConcurrentHashMap<>();
+
+    public StatusCache(LightProxy lightProxy) {
+        this.lightProxy = lightProxy;
+        ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(lightProxy.getConfig().getStatusCacheTtlMillis(), 0));
+    }
+
+    public boolean isEnabled() {
+        return ttlNanos > 0;
+    }
+
+    /**
+     * Returns the cached status response with the configured overlay applied, or {@code null} if there is none yet.
+     * An expired status is still returned while a newer one is fetched in the background. Statuses are cached per
+     * protocol version, for about {@value #MAX_CACHED_PROTOCOL_VERSIONS} versions; when a new version comes in, the
+     * expired and failed statuses are dropped first, then the least recently requested one.
+     */
+    @Nullable
+    public String getStatus(EventLoop eventLoop, int protocolVersion) {
+        var now = System.nanoTime();
+        var slot = slots.get(protocolVersion);
+        if (slot == null) {
+            if (slots.size() >= MAX_CACHED_PROTOCOL_VERSIONS) {
+                evict(now);
+            }
+            slot = slots.computeIfAbsent(protocolVersion, Slot::new);
+        }
+        slot.lastRequestedAt = now;
+
+        var entry = slot.entry;
+        if (entry == null || now - entry.fetchedAt >= ttlNanos) {
+            refresh(eventLoop, slot);
+        }
+        return entry == null ? null : overlay(entry);
+    }
+
+    public void invalidate() {
+        slots.clear();
+    }
+
+    private void evict(long now) {
+        Slot eldest = null;
+        for (var slot : slots.values()) {
+            var entry = slot.entry;
+            if (!slot.refreshing.get() && (entry == null || now - entry.fetchedAt >= ttlNanos)) {
+                slots.remove(slot.protocolVersion, slot);
+            } else if (eldest == null || slot.lastRequestedAt - eldest.lastRequestedAt < 0) {
+                eldest = slot;
+            }
+        }
+        if (eldest != null && slots.size() >= MAX_CACHED_PROTOCOL_VERSIONS) {
+            slots.remove(eldest.protocolVersion, eldest);
+        }
+    }
+
+    private void refresh(EventLoop eventLoop, Slot slot) {
+        if (!slot.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        var config = lightProxy.getConfig();
+        var transport = lightProxy.getTransport();
+        var bootstrap = new Bootstrap();
+        bootstrap.group(eventLoop)
+            .channel(transport.getChannelClass())
+            .option(ChannelOption.TCP_NODELAY, true)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) FETCH_TIMEOUT_MILLIS)
+            .handler(new StatusFetcher(slot));
+        transport.configureBackend(bootstrap, config);
+        bootstrap.connect(lightProxy.getRemoteAddress(), lightProxy.getRemotePort()).addListener(future -> {
+            if (!future.isSuccess()) {
+                complete(slot, null, future.cause());
+            }
+        });
+    }
+
+    private void complete(Slot slot, @Nullable String status, @Nullable Throwable cause) {
+        if (!slot.refreshing.get()) {
+            return;
+        }
+
+        if (status != null) {
+            try {
+                slot.entry = new Entry(status, JsonParser.parseString(status).getAsJsonObject(), System.nanoTime());
+                LOGGER.debug(() -> "Refreshed the cached status of the remote server, protocol version: " + slot.protocolVersion);
+            } catch (RuntimeException exception) {
+                slot.entry = null;
+                LOGGER.warn("Received an invalid status from the remote server", exception);
+            }
+        } else {
+            slot.entry = null;
+            LOGGER.warn(() -> "Failed to fetch the status of the remote server: " + (cause == null ? "connection closed" : cause.toString()));
+        }
+        slot.refreshing.set(false);
+    }
+
+    private String overlay(Entry entry) {
+        var config = lightProxy.getConfig();
+        var motd = config.getStatusMotd();
+        var playerCountOverlay = config.getStatusPlayerCountOverlay();
+        if (motd.isEmpty() && !playerCountOverlay) {
+            return entry.status;
+        }
+
+        var status = entry.parsed.deepCopy();
+        if (!motd.isEmpty()) {
+            var description = new JsonObject();
+            description.addProperty("text", motd);
+            status.add("description", description);
+        }
+        if (playerCountOverlay) {
+            var players = status.has("players") && status.get("players").isJsonObject() ? status.getAsJsonObject("players") : new JsonObject();
+            players.addProperty("online", lightProxy.getSessionRegistry().getPlayerCount());
+            players.remove("sample");
+            status.add("players", players);
+        }
+        return status.toString();
+    }
+
+    private record Entry(String status, JsonObject parsed, long fetchedAt) {}
+
+    private static final class Slot {
+        final int protocolVersion;
+
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        @Nullable
+        volatile Entry entry;
+
+        volatile long lastRequestedAt;
+
+        Slot(int protocolVersion) {
+            this.protocolVersion = protocolVersion;
+        }
+    }
+
+    private final class StatusFetcher extends ChannelInboundHandlerAdapter {
+        private final Slot slot;
+
+        @Nullable
+        private ByteBuf cumulation;
+
+        private boolean done;
+
+        @Nullable
+        private ScheduledFuture<?> timeout;
+
+        StatusFetcher(Slot slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext context) {
+            var channel = context.channel();
+            timeout = channel.eventLoop().schedule(() -> {
+                if (!done) {
+                    fail(context, new DecoderException("Timed out"));
+                }
+            }, FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+
+            var handshake = context.alloc().heapBuffer();
+            var out = context.alloc().buffer();
+            try {
+                PacketUtils.writeVarint(handshake, Constants.PID_CH_HANDSHAKE);
+                PacketUtils.writeVarint(handshake, slot.protocolVersion);
+                PacketUtils.writeUtf8String(handshake, lightProxy.getRemoteAddress());
+                handshake.writeShort(lightProxy.getRemotePort());
+                PacketUtils.writeVarint(handshake, ConnectionState.STATUS.getId());
+                PacketUtils.writeVarint(out, handshake.readableBytes());
+                out.writeBytes(handshake);
+
+                PacketUtils.writeVarint(out, 1);
+                PacketUtils.writeVarint(out, Constants.PID_CS_STATUS_REQUEST);
+            } finally {
+                handshake.release();
+            }
+            channel.writeAndFlush(out);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext context, Object message) {
+            var in = (ByteBuf) message;
+            if (done) {
+                in.release();
+                return;
+            }
+            cumulation = cumulation == null ? in : ByteToMessageDecoder.MERGE_CUMULATOR.cumulate(context.alloc(), cumulation, in);
+
+            var buffer = cumulation;
+            var start = buffer.readerIndex();
+            var size = PacketUtils.readFrameSize(buffer);
+            if (size < 0 || size > buffer.readableBytes()) {
+                buffer.readerIndex(start);
+                return;
+            }
+
+            var id = PacketUtils.readVarint(buffer);
+            if (id != Constants.PID_SS_STATUS_RESPONSE) {
+                fail(context, new DecoderException("Unexpected packet ID: " + id));
+                return;
+            }
+            // A malformed status throws here and still completes the refresh through fail()
+            var status = PacketUtils.readUtf8String(buffer);
+            done = true;
+            complete(slot, status, null);
+            context.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext context) {
+            if (cumulation != null) {
+                cumulation.release();
+                cumulation = null;
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+            if (!done) {
+                done = true;
+                complete(slot, null, null);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext context, Throwable cause) {
+            fail(context, cause);
+        }
+
+        private void fail(ChannelHandlerContext context, Throwable cause) {
+            if (!done) {
+                done = true;
+                complete(slot, null, cause);
+            }
+            context.close();
+        }
+    }
+
+    private static final long FETCH_TIMEOUT_MILLIS = 5000;
+
+    private static final int MAX_CACHED_PROTOCOL_VERSIONS = 16;
+
+    private static final Logger LOGGER = LogManager.getLogger(StatusCache.class);
+}
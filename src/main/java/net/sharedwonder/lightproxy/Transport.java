@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.IoHandlerFactory;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.UnixChannelOption;
+import io.netty.channel.uring.IoUring;
+import io.netty.channel.uring.IoUringChannelOption;
+import io.netty.channel.uring.IoUringIoHandler;
+import io.netty.channel.uring.IoUringServerSocketChannel;
+import io.netty.channel.uring.IoUringSocketChannel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+public enum Transport {
+    EPOLL("epoll") {
+        @Override
+        @Nullable
+        Throwable unavailabilityCause() {
+            return Epoll.isAvailable() ? null : Epoll.unavailabilityCause();
+        }
+
+        @Override
+        public IoHandlerFactory newIoHandlerFactory() {
+            return EpollIoHandler.newFactory();
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return EpollServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return EpollSocketChannel.class;
+        }
+
+        @Override
+        void configureChild(ServerBootstrap bootstrap, ProxyConfig config) {
+            super.configureChild(bootstrap, config);
+            bootstrap.childOption(EpollChannelOption.TCP_QUICKACK, config.getTcpQuickAck());
+        }
+
+        @Override
+        void configureBackend(Bootstrap bootstrap, ProxyConfig config) {
+            super.configureBackend(bootstrap, config);
+            bootstrap.option(EpollChannelOption.TCP_QUICKACK, config.getTcpQuickAck());
+            bootstrap.option(ChannelOption.TCP_FASTOPEN_CONNECT, config.getTcpFastOpenConnect());
+        }
+    },
+
+    IO_URING("io_uring") {
+        @Override
+        @Nullable
+        Throwable unavailabilityCause() {
+            return IoUring.isAvailable() ? null : IoUring.unavailabilityCause();
+        }
+
+        @Override
+        public IoHandlerFactory newIoHandlerFactory() {
+            return IoUringIoHandler.newFactory();
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return IoUringServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return IoUringSocketChannel.class;
+        }
+
+        @Override
+        void configureChild(ServerBootstrap bootstrap, ProxyConfig config) {
+            super.configureChild(bootstrap, config);
+            bootstrap.childOption(IoUringChannelOption.TCP_QUICKACK, config.getTcpQuickAck());
+        }
+
+        @Override
+        void configureBackend(Bootstrap bootstrap, ProxyConfig config) {
+            super.configureBackend(bootstrap, config);
+            bootstrap.option(IoUringChannelOption.TCP_QUICKACK, config.getTcpQuickAck());
+            bootstrap.option(ChannelOption.TCP_FASTOPEN_CONNECT, config.getTcpFastOpenConnect());
+        }
+    },
+
+    NIO("nio") {
+        @Override
+        @Nullable
+        Throwable unavailabilityCause() {
+            return null;
+        }
+
+        @Override
+        public IoHandlerFactory newIoHandlerFactory() {
+            return NioIoHandler.newFactory();
+        }
+
+        @Override
+        public Class<? extends ServerSocketChannel> getServerChannelClass() {
+            return NioServerSocketChannel.class;
+        }
+
+        @Override
+        public Class<? extends SocketChannel> getChannelClass() {
+            return NioSocketChannel.class;
+        }
+    };
+
+    public static final String AUTO = "auto";
+
+    private final String name;
+
+    Transport(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isAvailable() {
+        return unavailabilityCause() == null;
+    }
+
+    public boolean supportsReusePort() {
+        return this != NIO;
+    }
+
+    @Nullable
+    abstract Throwable unavailabilityCause();
+
+    public abstract IoHandlerFactory newIoHandlerFactory();
+
+    public abstract Class<? extends ServerSocketChannel> getServerChannelClass();
+
+    public abstract Class<? extends SocketChannel> getChannelClass();
+
+    void configureChild(ServerBootstrap bootstrap, ProxyConfig config) {
+        if (config.getSocketReceiveBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_RCVBUF, config.getSocketReceiveBufferSize());
+        }
+        if (config.getSocketSendBufferSize() > 0) {
+            bootstrap.childOption(ChannelOption.SO_SNDBUF, config.getSocketSendBufferSize());
+        }
+    }
+
+    void enableReusePort(ServerBootstrap bootstrap) {
+        if (!supportsReusePort()) {
+            throw new UnsupportedOperationException("SO_REUSEPORT is not supported by the transport: " + name);
+        }
+        bootstrap.option(UnixChannelOption.SO_REUSEPORT, true);
+    }
+
+    void configureBackend(Bootstrap bootstrap, ProxyConfig config) {
+        if (config.getSocketReceiveBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, config.getSocketReceiveBufferSize());
+        }
+        if (config.getSocketSendBufferSize() > 0) {
+            bootstrap.option(ChannelOption.SO_SNDBUF, config.getSocketSendBufferSize());
+        }
+    }
+
+    public static Transport select(String name) {
+        if (name.equals(AUTO)) {
+            for (var transport : values()) {
+                if (transport.isAvailable()) {
+                    return transport;
+                }
+            }
+            return NIO;
+        }
+
+        for (var transport : values()) {
+            if (transport.name.equals(name)) {
+                var cause = transport.unavailabilityCause();
+                if (cause == null) {
+                    return transport;
+                }
+                LOGGER.warn("Transport '" + name + "' is not available, falling back to NIO", cause);
+                return NIO;
+            }
+        }
+        throw new IllegalArgumentException("Unknown transport: " + name);
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(Transport.class);
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.crypt;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+
+public final class AesEcbCipherProvider implements CipherProvider {
+    @Override
+    public String getName() {
+        return "aes-ecb";
+    }
+
+    @Override
+    public StreamCipher newCipher(SecretKey secretKey, boolean encryption) throws GeneralSecurityException {
+        var cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+        return new Cfb8StreamCipher(cipher, secretKey.getEncoded(), encryption);
+    }
+
+    private static final String CIPHER_TRANSFORMATION = "AES/ECB/NoPadding";
+
+    private static final int BLOCK_SIZE = 16;
+
+    private static final int REGISTER_SIZE = BLOCK_SIZE * 64;
+
+    private static final class Cfb8StreamCipher implements StreamCipher {
+        private final Cipher cipher;
+
+        private final boolean encryption;
+
+        private final byte[] register = new byte[REGISTER_SIZE];
+
+        private final byte[] keystream = new byte[BLOCK_SIZE];
+
+        private int offset;
+
+        private Cfb8StreamCipher(Cipher cipher, byte[] iv, boolean encryption) {
+            if (iv.length != BLOCK_SIZE) {
+                throw new IllegalArgumentException("Invalid IV length: " + iv.length);
+            }
+            this.cipher = cipher;
+            this.encryption = encryption;
+            System.arraycopy(iv, 0, register, 0, BLOCK_SIZE);
+        }
+
+        @Override
+        public void process(ByteBuffer buffer) {
+            try {
+                if (buffer.hasArray()) {
+                    var array = buffer.array();
+                    var end = buffer.arrayOffset() + buffer.limit();
+                    for (var index = buffer.arrayOffset() + buffer.position(); index < end; ++index) {
+                        array[index] = processByte(array[index]);
+                    }
+                } else {
+                    for (var index = buffer.position(); index < buffer.limit(); ++index) {
+                        buffer.put(index, processByte(buffer.get(index)));
+                    }
+                }
+            } catch (ShortBufferException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+
+        private byte processByte(byte in) throws ShortBufferException {
+            cipher.update(register, offset, BLOCK_SIZE, keystream, 0);
+            var out = (byte) (in ^ keystream[0]);
+            register[offset + BLOCK_SIZE] = encryption ? out : in;
+            if (++offset + BLOCK_SIZE == REGISTER_SIZE) {
+                System.arraycopy(register, offset, register, 0, BLOCK_SIZE);
+                offset = 0;
+            }
+            return out;
+        }
+    }
+}
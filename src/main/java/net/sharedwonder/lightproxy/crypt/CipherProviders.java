@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.crypt;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+public final class CipherProviders {
+    private CipherProviders() {}
+
+    public static final String AUTO = "auto";
+
+    private static final Logger LOGGER = LogManager.getLogger(CipherProviders.class);
+
+    private static final Map<String, CipherProvider> PROVIDERS = new LinkedHashMap<>();
+
+    private static final CipherProvider DEFAULT_PROVIDER = new JceCipherProvider();
+
+    private static final int BENCHMARK_DATA_SIZE = 64 * 1024;
+
+    private static final int BENCHMARK_WARMUP_ROUNDS = 8;
+
+    private static final int BENCHMARK_ROUNDS = 8;
+
+    private static volatile CipherProvider provider = DEFAULT_PROVIDER;
+
+    static {
+        register(DEFAULT_PROVIDER);
+        register(new AesEcbCipherProvider());
+    }
+
+    public static CipherProvider getProvider() {
+        return provider;
+    }
+
+    public static synchronized void register(CipherProvider provider) {
+        PROVIDERS.put(provider.getName(), provider);
+    }
+
+    public static synchronized void unregister(String name) {
+        PROVIDERS.remove(name);
+    }
+
+    @Nullable
+    public static synchronized CipherProvider getProvider(String name) {
+        return PROVIDERS.get(name);
+    }
+
+    public static synchronized void select(String name) {
+        if (name.equals(AUTO)) {
+            provider = benchmark();
+        } else {
+            var selected = PROVIDERS.get(name);
+            if (selected == null) {
+                throw new IllegalArgumentException("Unknown cipher provider: " + name);
+            }
+            provider = selected;
+        }
+        LOGGER.info(() -> "Using the cipher provider: " + provider.getName());
+    }
+
+    public static synchronized CipherProvider benchmark() {
+        var data = new byte[BENCHMARK_DATA_SIZE];
+        var key = new byte[16];
+        ThreadLocalRandom.current().nextBytes(data);
+        ThreadLocalRandom.current().nextBytes(key);
+        var secretKey = new SecretKeySpec(key, "AES");
+
+        CipherProvider fastest = null;
+        var fastestTime = Long.MAX_VALUE;
+        for (var candidate : PROVIDERS.values()) {
+            long time;
+            try {
+                var cipher = candidate.newCipher(secretKey, true);
+                var buffer = ByteBuffer.wrap(data);
+                for (var round = 0; round < BENCHMARK_WARMUP_ROUNDS; ++round) {
+                    cipher.process(buffer);
+                }
+                time = Long.MAX_VALUE;
+                for (var round = 0; round < BENCHMARK_ROUNDS; ++round) {
+                    var start = System.nanoTime();
+                    cipher.process(buffer);
+                    time = Math.min(time, System.nanoTime() - start);
+                }
+            } catch (Exception exception) {
+                LOGGER.warn("Cipher provider '" + candidate.getName() + "' is not available", exception);
+                continue;
+            }
+
+            var throughput = BENCHMARK_DATA_SIZE * 1e9 / Math.max(time, 1) / (1024 * 1024);
+            LOGGER.info(() -> String.format("Cipher provider '%s': %.1f MiB/s", candidate.getName(), throughput));
+            if (time < fastestTime) {
+                fastest = candidate;
+                fastestTime = time;
+            }
+        }
+        return fastest != null ? fastest : DEFAULT_PROVIDER;
+    }
+}
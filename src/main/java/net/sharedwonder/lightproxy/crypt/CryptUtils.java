@@ -25,6 +25,7 @@ import java.security.spec.X509EncodedKeySpec;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
+import org.jspecify.annotations.Nullable;
 
 public final class CryptUtils {
     private CryptUtils() {}
@@ -35,6 +36,21 @@ public final class CryptUtils {
 
     private static final int KEY_PAIR_KEY_SIZE = 1024;
 
+    @Nullable
+    private static volatile KeyPairPool keyPairPool;
+
+    public static synchronized void initKeyPairPool(int size, boolean reuseWhenExhausted) {
+        if (keyPairPool != null) {
+            keyPairPool.shutdown();
+        }
+        keyPairPool = size > 0 ? new KeyPairPool(size, reuseWhenExhausted) : null;
+    }
+
+    public static KeyPair takeKeyPair() {
+        var pool = keyPairPool;
+        return pool != null ? pool.take() : generateKeyPair();
+    }
+
     public static KeyPair generateKeyPair() {
         try {
             var generator = KeyPairGenerator.getInstance(KEY_PAIR_ALGORITHM);
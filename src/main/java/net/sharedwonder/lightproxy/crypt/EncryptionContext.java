@@ -20,11 +20,11 @@ import io.netty.buffer.ByteBuf;
 import net.sharedwonder.lightproxy.packet.PacketType;
 
 public sealed interface EncryptionContext permits EncryptionEnabledContext, EncryptionDisabledContext, EncryptionHandshakingContext {
-    default ByteBuf encrypt(PacketType type, ByteBuf in) {
+    default void encrypt(PacketType type, ByteBuf buffer) {
         throw new UnsupportedOperationException();
     }
 
-    default ByteBuf decrypt(PacketType type, ByteBuf in) {
+    default void decrypt(PacketType type, ByteBuf buffer) {
         throw new UnsupportedOperationException();
     }
 
@@ -17,48 +17,40 @@
 package net.sharedwonder.lightproxy.crypt;
 
 import java.security.GeneralSecurityException;
-import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
-import javax.crypto.ShortBufferException;
-import javax.crypto.spec.IvParameterSpec;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import net.sharedwonder.lightproxy.packet.PacketType;
-import net.sharedwonder.lightproxy.packet.PacketUtils;
 
 public final class EncryptionEnabledContext implements EncryptionContext {
-    private final Cipher c2sEncryptionCipher;
+    private final StreamCipher c2sEncryptionCipher;
 
-    private final Cipher c2sDecryptionCipher;
+    private final StreamCipher c2sDecryptionCipher;
 
-    private final Cipher s2cEncryptionCipher;
+    private final StreamCipher s2cEncryptionCipher;
 
-    private final Cipher s2cDecryptionCipher;
+    private final StreamCipher s2cDecryptionCipher;
 
     public EncryptionEnabledContext(SecretKey secretKey) {
+        var provider = CipherProviders.getProvider();
         try {
-            c2sEncryptionCipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-            c2sEncryptionCipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(secretKey.getEncoded()));
-            c2sDecryptionCipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-            c2sDecryptionCipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(secretKey.getEncoded()));
+            c2sEncryptionCipher = provider.newCipher(secretKey, true);
+            c2sDecryptionCipher = provider.newCipher(secretKey, false);
 
-            s2cEncryptionCipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-            s2cEncryptionCipher.init(Cipher.ENCRYPT_MODE, secretKey, new IvParameterSpec(secretKey.getEncoded()));
-            s2cDecryptionCipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-            s2cDecryptionCipher.init(Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(secretKey.getEncoded()));
+            s2cEncryptionCipher = provider.newCipher(secretKey, true);
+            s2cDecryptionCipher = provider.newCipher(secretKey, false);
         } catch (GeneralSecurityException exception) {
             throw new RuntimeException(exception);
         }
     }
 
     @Override
-    public ByteBuf encrypt(PacketType type, ByteBuf in) {
-        return operate(in, type == PacketType.C2S ? c2sEncryptionCipher : s2cEncryptionCipher);
+    public void encrypt(PacketType type, ByteBuf buffer) {
+        operate(buffer, type == PacketType.C2S ? c2sEncryptionCipher : s2cEncryptionCipher);
     }
 
     @Override
-    public ByteBuf decrypt(PacketType type, ByteBuf in) {
-        return operate(in, type == PacketType.C2S ? c2sDecryptionCipher : s2cDecryptionCipher);
+    public void decrypt(PacketType type, ByteBuf buffer) {
+        operate(buffer, type == PacketType.C2S ? c2sDecryptionCipher : s2cDecryptionCipher);
     }
 
     @Override
@@ -66,16 +58,15 @@ public final class EncryptionEnabledContext implements EncryptionContext {
         return true;
     }
 
-    private static final String CIPHER_TRANSFORMATION = "AES/CFB8/NoPadding";
-
-    private static ByteBuf operate(ByteBuf in, Cipher cipher) {
-        var size = cipher.getOutputSize(in.readableBytes());
-        var bytes = PacketUtils.readBytes(in);
-        try {
-            var buffer = new byte[size];
-            return Unpooled.wrappedBuffer(buffer, 0, cipher.update(bytes, 0, bytes.length, buffer));
-        } catch (ShortBufferException exception) {
-            throw new RuntimeException(exception);
+    private static void operate(ByteBuf buffer, StreamCipher cipher) {
+        var index = buffer.readerIndex();
+        var length = buffer.readableBytes();
+        if (buffer.nioBufferCount() == 1) {
+            cipher.process(buffer.internalNioBuffer(index, length));
+        } else {
+            for (var nioBuffer : buffer.nioBuffers(index, length)) {
+                cipher.process(nioBuffer);
+            }
         }
     }
 }
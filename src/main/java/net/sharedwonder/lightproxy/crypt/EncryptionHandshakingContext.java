@@ -35,7 +35,7 @@ public final class EncryptionHandshakingContext implements EncryptionContext {
         this.baseServerId = baseServerId.getBytes(StandardCharsets.ISO_8859_1);
         this.originServerPublicKey = originServerPublicKey;
         this.verifyToken = verifyToken;
-        var keyPair = CryptUtils.generateKeyPair();
+        var keyPair = CryptUtils.takeKeyPair();
         proxyServerPublicKey = keyPair.getPublic();
         proxyServerPrivateKey = keyPair.getPrivate();
     }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.crypt;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+
+public final class JceCipherProvider implements CipherProvider {
+    @Override
+    public String getName() {
+        return "jce";
+    }
+
+    @Override
+    public StreamCipher newCipher(SecretKey secretKey, boolean encryption) throws GeneralSecurityException {
+        var cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        cipher.init(encryption ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, secretKey, new IvParameterSpec(secretKey.getEncoded()));
+        return new JceStreamCipher(cipher);
+    }
+
+    private static final String CIPHER_TRANSFORMATION = "AES/CFB8/NoPadding";
+
+    private static final int SCRATCH_SIZE = 8192;
+
+    private static final class JceStreamCipher implements StreamCipher {
+        private final Cipher cipher;
+
+        private byte[] scratch;
+
+        private JceStreamCipher(Cipher cipher) {
+            this.cipher = cipher;
+        }
+
+        @Override
+        public void process(ByteBuffer buffer) {
+            try {
+                if (buffer.hasArray()) {
+                    var offset = buffer.arrayOffset() + buffer.position();
+                    cipher.update(buffer.array(), offset, buffer.remaining(), buffer.array(), offset);
+                    return;
+                }
+
+                if (scratch == null) {
+                    scratch = new byte[SCRATCH_SIZE];
+                }
+                for (var index = buffer.position(); index < buffer.limit(); index += SCRATCH_SIZE) {
+                    var length = Math.min(SCRATCH_SIZE, buffer.limit() - index);
+                    buffer.get(index, scratch, 0, length);
+                    cipher.update(scratch, 0, length, scratch, 0);
+                    buffer.put(index, scratch, 0, length);
+                }
+            } catch (ShortBufferException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
+    }
+}
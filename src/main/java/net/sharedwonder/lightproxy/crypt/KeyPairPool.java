@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.crypt;
+
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jspecify.annotations.Nullable;
+
+public final class KeyPairPool {
+    private final BlockingQueue<KeyPair> pool;
+
+    private final boolean reuseWhenExhausted;
+
+    private final ExecutorService refillExecutor;
+
+    private final AtomicBoolean refilling = new AtomicBoolean();
+
+    @Nullable
+    private volatile KeyPair lastKeyPair;
+
+    public KeyPairPool(int size, boolean reuseWhenExhausted) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid key pair pool size: " + size);
+        }
+        pool = new ArrayBlockingQueue<>(size);
+        this.reuseWhenExhausted = reuseWhenExhausted;
+        refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "KeyPairPool-Refill");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        refill();
+    }
+
+    public KeyPair take() {
+        var keyPair = pool.poll();
+        if (keyPair == null) {
+            keyPair = lastKeyPair;
+            if (keyPair == null || !reuseWhenExhausted) {
+                LOGGER.debug("Key pair pool exhausted, generating a key pair synchronously");
+                keyPair = CryptUtils.generateKeyPair();
+            }
+        }
+        lastKeyPair = keyPair;
+        refill();
+        return keyPair;
+    }
+
+    public int available() {
+        return pool.size();
+    }
+
+    public void shutdown() {
+        refillExecutor.shutdownNow();
+    }
+
+    private void refill() {
+        if (pool.remainingCapacity() == 0 || !refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refillExecutor.execute(this::fill);
+    }
+
+    private void fill() {
+        try {
+            while (pool.remainingCapacity() > 0) {
+                var keyPair = CryptUtils.generateKeyPair();
+                if (!pool.offer(keyPair)) {
+                    break;
+                }
+                if (lastKeyPair == null) {
+                    lastKeyPair = keyPair;
+                }
+            }
+        } catch (RuntimeException exception) {
+            LOGGER.error("Failed to refill the key pair pool", exception);
+            refilling.set(false);
+            return;
+        }
+
+        refilling.set(false);
+        refill();
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(KeyPairPool.class);
+}
@@ -21,6 +21,7 @@ import net.sharedwonder.lightproxy.ConnectionContext;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.packet.C2SPacketHandler;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import net.sharedwonder.lightproxy.util.ConnectionState;
 
@@ -31,7 +32,7 @@ public class CHHandshake implements C2SPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
         context.setProtocolVersion(PacketUtils.readVarint(in));
         PacketUtils.skipChunk(in);
         in.skipBytes(2);
@@ -39,6 +40,16 @@ public class CHHandshake implements C2SPacketHandler {
 
         context.setConnectionState(requestedState);
 
+        var connection = context.connectBackend();
+        if (!connection.isDone() || connection.isCompletedExceptionally()) {
+            context.deferHandle(connection.thenApply(ignored -> (ignoredContext, transformed) -> writeHandshake(context, transformed, requestedState)));
+            return HandleFlag.DEFERRED;
+        }
+
+        return writeHandshake(context, out.buffer(), requestedState);
+    }
+
+    private static HandleFlag writeHandshake(ConnectionContext context, ByteBuf transformed, ConnectionState requestedState) {
         PacketUtils.writeVarint(transformed, context.getProtocolVersion());
         PacketUtils.writeUtf8String(transformed, context.getRemoteAddress());
         transformed.writeShort(context.getRemotePort());
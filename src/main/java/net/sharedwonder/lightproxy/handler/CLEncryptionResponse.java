@@ -19,6 +19,9 @@ package net.sharedwonder.lightproxy.handler;
 import java.security.MessageDigest;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import javax.crypto.SecretKey;
 import io.netty.buffer.ByteBuf;
 import net.sharedwonder.lightproxy.ConnectionContext;
@@ -28,6 +31,8 @@ import net.sharedwonder.lightproxy.crypt.EncryptionEnabledContext;
 import net.sharedwonder.lightproxy.crypt.EncryptionHandshakingContext;
 import net.sharedwonder.lightproxy.packet.C2SPacketHandler;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketContinuation;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -39,7 +44,7 @@ public class CLEncryptionResponse implements C2SPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
         if (!(context.getEncryptionContext() instanceof EncryptionHandshakingContext handshakingContext)) {
             throw new IllegalStateException("Encryption context is not handshaking context");
         }
@@ -50,40 +55,60 @@ public class CLEncryptionResponse implements C2SPacketHandler {
             throw new RuntimeException("Unable to enable encryption because no Minecraft accounts were configured: " + username);
         }
 
-        var secretKey = CryptUtils.decodeSecretKey(CryptUtils.decryptData(handshakingContext.proxyServerPrivateKey, PacketUtils.readByteArray(in)));
-        var verifyToken = CryptUtils.decryptData(handshakingContext.proxyServerPrivateKey, PacketUtils.readByteArray(in));
-
         var profile = accounts.get(username);
-        if (profile != null) {
-            if (!context.isClientFromLocalhost()) {
-                if (!profile.hasJoinedServer(calcServerId(handshakingContext.baseServerId, secretKey, handshakingContext.proxyServerPublicKey), context.getClientAddress())) {
-                    throw new RuntimeException("Unauthenticated client (hasJoinedServer): " + username);
-                }
-
-                LOGGER.info(() -> "Client authenticated, username: " + context.getPlayerUsername());
-            }
-
-            LOGGER.info(() -> "Client from localhost, no authentication required, username: " + context.getPlayerUsername());
-
-            if (!Arrays.equals(verifyToken, handshakingContext.verifyToken)) {
-                throw new RuntimeException("Unauthenticated client (verifyToken): " + username);
-            }
-
-            profile.joinServer(calcServerId(handshakingContext.baseServerId, secretKey, handshakingContext.originServerPublicKey));
-        } else {
+        if (profile == null) {
             throw new RuntimeException("Unable to enable encryption because the Minecraft account profile of the username was not found: " + username);
         }
 
-        context.setEncryptionContext(new EncryptionEnabledContext(secretKey));
+        var encryptedSecretKey = PacketUtils.readByteArray(in);
+        var encryptedVerifyToken = PacketUtils.readByteArray(in);
+        var clientFromLocalhost = context.isClientFromLocalhost();
+        var clientAddress = context.getClientAddress();
+
+        var continuation = CompletableFuture.supplyAsync(() ->
+                CryptUtils.decodeSecretKey(CryptUtils.decryptData(handshakingContext.proxyServerPrivateKey, encryptedSecretKey)), EXECUTOR)
+            .thenCompose(secretKey -> {
+                if (clientFromLocalhost) {
+                    LOGGER.info(() -> "Client from localhost, no authentication required, username: " + username);
+                    return CompletableFuture.completedFuture(secretKey);
+                }
 
-        PacketUtils.writeByteArray(transformed, CryptUtils.encryptData(handshakingContext.originServerPublicKey, secretKey.getEncoded()));
-        PacketUtils.writeByteArray(transformed, CryptUtils.encryptData(handshakingContext.originServerPublicKey, handshakingContext.verifyToken));
+                var serverId = calcServerId(handshakingContext.baseServerId, secretKey, handshakingContext.proxyServerPublicKey);
+                return profile.hasJoinedServerAsync(serverId, clientAddress).thenApply(joined -> {
+                    if (!joined) {
+                        throw new RuntimeException("Unauthenticated client (hasJoinedServer): " + username);
+                    }
+                    LOGGER.info(() -> "Client authenticated, username: " + username);
+                    return secretKey;
+                });
+            })
+            .thenComposeAsync(secretKey -> {
+                var verifyToken = CryptUtils.decryptData(handshakingContext.proxyServerPrivateKey, encryptedVerifyToken);
+                if (!Arrays.equals(verifyToken, handshakingContext.verifyToken)) {
+                    throw new RuntimeException("Unauthenticated client (verifyToken): " + username);
+                }
 
-        return HandleFlag.TRANSFORMED;
+                var serverId = calcServerId(handshakingContext.baseServerId, secretKey, handshakingContext.originServerPublicKey);
+                return profile.joinServerAsync(serverId).thenApplyAsync(ignored -> {
+                    var encryptedSecretKeyForServer = CryptUtils.encryptData(handshakingContext.originServerPublicKey, secretKey.getEncoded());
+                    var encryptedVerifyTokenForServer = CryptUtils.encryptData(handshakingContext.originServerPublicKey, handshakingContext.verifyToken);
+                    return (PacketContinuation) (resumedContext, resumedTransformed) -> {
+                        resumedContext.setEncryptionContext(new EncryptionEnabledContext(secretKey));
+                        PacketUtils.writeByteArray(resumedTransformed, encryptedSecretKeyForServer);
+                        PacketUtils.writeByteArray(resumedTransformed, encryptedVerifyTokenForServer);
+                        return HandleFlag.TRANSFORMED;
+                    };
+                }, EXECUTOR);
+            }, EXECUTOR);
+
+        context.deferHandle(continuation);
+        return HandleFlag.DEFERRED;
     }
 
     private static final Logger LOGGER = LogManager.getLogger(CLEncryptionResponse.class);
 
+    private static final Executor EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
     private static byte[] calcServerId(byte[] baseServerId, SecretKey secretKey, PublicKey publicKey) {
         try {
             var messageDigest = MessageDigest.getInstance("SHA-1");
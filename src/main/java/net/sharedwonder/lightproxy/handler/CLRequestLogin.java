@@ -21,6 +21,7 @@ import net.sharedwonder.lightproxy.ConnectionContext;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.packet.C2SPacketHandler;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,10 +33,23 @@ public class CLRequestLogin implements C2SPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
         context.setPlayerUsername(PacketUtils.readUtf8String(in));
         LOGGER.info(() -> "Client requested to login, username: " + context.getPlayerUsername());
-        return HandleFlag.PASSED;
+
+        var admission = context.requestLoginAdmission();
+        if (admission.isDone()) {
+            return HandleFlag.PASSED;
+        }
+
+        LOGGER.info(() -> "Login queued, username: " + context.getPlayerUsername());
+        var remaining = PacketUtils.readBytes(in);
+        context.deferHandle(admission.thenApply(permit -> (ignored, transformed) -> {
+            PacketUtils.writeUtf8String(transformed, context.getPlayerUsername());
+            transformed.writeBytes(remaining);
+            return HandleFlag.TRANSFORMED;
+        }));
+        return HandleFlag.DEFERRED;
     }
 
     private static final Logger LOGGER = LogManager.getLogger(CLRequestLogin.class);
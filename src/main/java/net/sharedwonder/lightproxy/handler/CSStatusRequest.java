@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.handler;
+
+import java.nio.charset.StandardCharsets;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import net.sharedwonder.lightproxy.ConnectionContext;
+import net.sharedwonder.lightproxy.Constants;
+import net.sharedwonder.lightproxy.packet.C2SPacketHandler;
+import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
+import net.sharedwonder.lightproxy.packet.PacketUtils;
+
+public class CSStatusRequest implements C2SPacketHandler {
+    @Override
+    public int getId() {
+        return Constants.PID_CS_STATUS_REQUEST;
+    }
+
+    @Override
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
+        var status = context.getLocalStatusResponse();
+        if (status == null) {
+            return HandleFlag.PASSED;
+        }
+
+        var bytes = status.getBytes(StandardCharsets.UTF_8);
+        var idSize = PacketUtils.calcVarintSize(Constants.PID_SS_STATUS_RESPONSE);
+        var packet = ByteBufAllocator.DEFAULT.buffer();
+        PacketUtils.writeVarint(packet, idSize + PacketUtils.calcVarintSize(bytes.length) + bytes.length);
+        PacketUtils.writeVarint(packet, Constants.PID_SS_STATUS_RESPONSE);
+        PacketUtils.writeByteArray(packet, bytes);
+        context.sendToClient(packet);
+        return HandleFlag.BLOCKED;
+    }
+}
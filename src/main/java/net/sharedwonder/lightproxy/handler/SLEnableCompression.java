@@ -20,6 +20,7 @@ import io.netty.buffer.ByteBuf;
 import net.sharedwonder.lightproxy.ConnectionContext;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import net.sharedwonder.lightproxy.packet.S2CPacketHandler;
 
@@ -30,7 +31,7 @@ public class SLEnableCompression implements S2CPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
         context.setCompressionThreshold(PacketUtils.readVarint(in));
         if (context.isClientFromLocalhost()) {
             return HandleFlag.BLOCKED;
@@ -21,6 +21,7 @@ import io.netty.buffer.ByteBuf;
 import net.sharedwonder.lightproxy.ConnectionContext;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import net.sharedwonder.lightproxy.packet.S2CPacketHandler;
 import net.sharedwonder.lightproxy.util.ConnectionState;
@@ -34,7 +35,7 @@ public class SLLoginSuccess implements S2CPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
         context.setConnectionState(ConnectionState.PLAY);
         context.setPlayerUuid(UUID.fromString(PacketUtils.readUtf8String(in)));
         LOGGER.info(() -> "Client successfully logged in, username: " + context.getPlayerUsername());
@@ -16,12 +16,14 @@
 
 package net.sharedwonder.lightproxy.handler;
 
+import java.security.PublicKey;
 import io.netty.buffer.ByteBuf;
 import net.sharedwonder.lightproxy.ConnectionContext;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.crypt.CryptUtils;
 import net.sharedwonder.lightproxy.crypt.EncryptionHandshakingContext;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import net.sharedwonder.lightproxy.packet.S2CPacketHandler;
 import org.apache.logging.log4j.LogManager;
@@ -34,13 +36,23 @@ public class SLRequestEncryption implements S2CPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
         LOGGER.info(() -> "Server requested encryption, client username: " + context.getPlayerUsername());
 
         var baseServerId = PacketUtils.readUtf8String(in);
         var publicKey = CryptUtils.decodePublicKey(PacketUtils.readByteArray(in));
         var verifyToken = PacketUtils.readByteArray(in);
 
+        var admission = context.requestLoginAdmission();
+        if (!admission.isDone()) {
+            context.deferHandle(admission.thenApply(permit -> (ignored, transformed) -> requestEncryption(context, transformed, baseServerId, publicKey, verifyToken)));
+            return HandleFlag.DEFERRED;
+        }
+
+        return requestEncryption(context, out.buffer(), baseServerId, publicKey, verifyToken);
+    }
+
+    private static HandleFlag requestEncryption(ConnectionContext context, ByteBuf transformed, String baseServerId, PublicKey publicKey, byte[] verifyToken) {
         var handshakingContext = new EncryptionHandshakingContext(baseServerId, publicKey, verifyToken);
         context.setEncryptionContext(handshakingContext);
 
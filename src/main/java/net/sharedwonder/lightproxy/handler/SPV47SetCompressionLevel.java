@@ -20,6 +20,7 @@ import io.netty.buffer.ByteBuf;
 import net.sharedwonder.lightproxy.ConnectionContext;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.packet.HandleFlag;
+import net.sharedwonder.lightproxy.packet.PacketOutput;
 import net.sharedwonder.lightproxy.packet.PacketUtils;
 import net.sharedwonder.lightproxy.packet.S2CPacketHandler;
 
@@ -30,15 +31,11 @@ public class SPV47SetCompressionLevel implements S2CPacketHandler {
     }
 
     @Override
-    public HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) {
-        if (context.getProtocolVersion() == MINECRAFT_1_8_X_PROTOCOL_VERSION) {
-            context.setCompressionThreshold(PacketUtils.readVarint(in));
-            if (!context.isEnabledCompressionForClient()) {
-                return HandleFlag.BLOCKED;
-            }
+    public HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) {
+        context.setCompressionThreshold(PacketUtils.readVarint(in));
+        if (!context.isEnabledCompressionForClient()) {
+            return HandleFlag.BLOCKED;
         }
         return HandleFlag.PASSED;
     }
-
-    private static final int MINECRAFT_1_8_X_PROTOCOL_VERSION = 47;
 }
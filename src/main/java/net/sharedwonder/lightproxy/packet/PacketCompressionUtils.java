@@ -20,33 +20,88 @@ import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.codec.EncoderException;
+import io.netty.util.concurrent.FastThreadLocal;
 
 public final class PacketCompressionUtils {
     private PacketCompressionUtils() {}
 
-    private static final Deflater DEFLATER = new Deflater();
+    private static final int DEFLATE_CHUNK_SIZE = 8192;
 
-    private static final Inflater INFLATER = new Inflater();
+    private static final int MAX_DECOMPRESSED_SIZE = 8 * 1024 * 1024;
+
+    private static volatile int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    private static volatile int compressionStrategy = Deflater.DEFAULT_STRATEGY;
+
+    private static final FastThreadLocal<Deflater> DEFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Deflater initialValue() {
+            var deflater = new Deflater(compressionLevel);
+            deflater.setStrategy(compressionStrategy);
+            return deflater;
+        }
+
+        @Override
+        protected void onRemoval(Deflater deflater) {
+            deflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<Inflater> INFLATER = new FastThreadLocal<>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+
+        @Override
+        protected void onRemoval(Inflater inflater) {
+            inflater.end();
+        }
+    };
+
+    private static final FastThreadLocal<byte[]> PEEK_BUFFER = new FastThreadLocal<>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[PacketUtils.VARINT_MAX_SIZE];
+        }
+    };
+
+    public static void configure(int level, int strategy) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        if (strategy != Deflater.DEFAULT_STRATEGY && strategy != Deflater.FILTERED && strategy != Deflater.HUFFMAN_ONLY) {
+            throw new IllegalArgumentException("Invalid compression strategy: " + strategy);
+        }
+        compressionLevel = level;
+        compressionStrategy = strategy;
+    }
 
     public static void compress(int compressionThreshold, int size, ByteBuf in, ByteBuf out) {
         if (size >= compressionThreshold) {
-            var buf = Unpooled.buffer();
-            var bytes = PacketUtils.readBytes(in, size);
-            PacketUtils.writeVarint(buf, size);
-
-            DEFLATER.setInput(bytes);
-            DEFLATER.finish();
-            var deflateBuffer = new byte[8192];
-            while (!DEFLATER.finished()) {
-                var outCompressedSize = DEFLATER.deflate(deflateBuffer);
-                buf.writeBytes(deflateBuffer, 0, outCompressedSize);
+            var lengthIndex = out.writerIndex();
+            out.writeMedium(0);
+            PacketUtils.writeVarint(out, size);
+
+            var deflater = DEFLATER.get();
+            deflater.setInput(in.nioBuffer(in.readerIndex(), size));
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.ensureWritable(DEFLATE_CHUNK_SIZE);
+                var writerIndex = out.writerIndex();
+                var outCompressedSize = deflater.deflate(out.internalNioBuffer(writerIndex, out.writableBytes()));
+                out.writerIndex(writerIndex + outCompressedSize);
             }
-            DEFLATER.reset();
+            deflater.reset();
+            in.skipBytes(size);
 
-            PacketUtils.writeVarint(out, buf.readableBytes());
-            out.writeBytes(buf);
-            buf.release();
+            var frameSize = out.writerIndex() - lengthIndex - 3;
+            if (frameSize > PacketUtils.VARINT21_MAX_VALUE) {
+                throw new EncoderException("Compressed packet is too large: " + frameSize);
+            }
+            PacketUtils.setVarint21(out, lengthIndex, frameSize);
         } else {
             PacketUtils.writeVarint(out, size + 1);
             PacketUtils.writeVarint(out, 0);
@@ -60,22 +115,67 @@ public final class PacketCompressionUtils {
         var originalSize = size - (in.readerIndex() - before);
 
         if (decompressedSize > 0) {
-            var compressedBytes = PacketUtils.readBytes(in, originalSize);
+            if (decompressedSize > MAX_DECOMPRESSED_SIZE) {
+                throw new DecoderException("Decompressed packet is too large: " + decompressedSize);
+            }
 
-            INFLATER.setInput(compressedBytes);
-            var decompressedBytes = new byte[decompressedSize];
+            out.ensureWritable(decompressedSize);
+            var writerIndex = out.writerIndex();
+            var inflater = INFLATER.get();
+            inflater.setInput(in.nioBuffer(in.readerIndex(), originalSize));
+            int inflatedSize;
             try {
-                INFLATER.inflate(decompressedBytes);
+                inflatedSize = inflater.inflate(out.internalNioBuffer(writerIndex, decompressedSize));
             } catch (DataFormatException exception) {
                 throw new RuntimeException("Failed to decompress packet", exception);
+            } finally {
+                inflater.reset();
+            }
+            if (inflatedSize != decompressedSize) {
+                throw new DecoderException("Decompressed packet size mismatch, expected: " + decompressedSize + ", actual: " + inflatedSize);
             }
-            INFLATER.reset();
 
-            out.writeBytes(decompressedBytes);
+            out.writerIndex(writerIndex + inflatedSize);
+            in.skipBytes(originalSize);
             return decompressedSize;
         }
 
         out.writeBytes(in, originalSize);
         return originalSize;
     }
+
+    public static int peekPacketId(ByteBuf in, int size) {
+        var start = in.readerIndex();
+        var decompressedSize = PacketUtils.readVarint(in);
+        var headerSize = in.readerIndex() - start;
+        in.readerIndex(start);
+
+        if (decompressedSize == 0) {
+            return PacketUtils.getVarint(in, start + headerSize);
+        }
+
+        var inflater = INFLATER.get();
+        inflater.setInput(in.nioBuffer(start + headerSize, size - headerSize));
+        var head = PEEK_BUFFER.get();
+        int count;
+        try {
+            count = inflater.inflate(head);
+        } catch (DataFormatException exception) {
+            throw new RuntimeException("Failed to decompress packet", exception);
+        } finally {
+            inflater.reset();
+        }
+
+        var result = 0;
+        var shift = 0;
+        for (var index = 0; index < count; ++index) {
+            var b = head[index];
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+        return -1;
+    }
 }
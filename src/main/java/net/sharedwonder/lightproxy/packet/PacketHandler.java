@@ -22,5 +22,24 @@ import net.sharedwonder.lightproxy.ConnectionContext;
 public sealed interface PacketHandler permits C2SPacketHandler, S2CPacketHandler {
     int getId();
 
-    HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) throws Exception;
+    default HandleFlag handle(ConnectionContext context, ByteBuf in, PacketOutput out) throws Exception {
+        var transformed = in.alloc().heapBuffer();
+        var appended = false;
+        try {
+            var flag = handle(context, in, transformed);
+            if (flag == HandleFlag.TRANSFORMED) {
+                out.append(transformed);
+                appended = true;
+            }
+            return flag;
+        } finally {
+            if (!appended) {
+                transformed.release();
+            }
+        }
+    }
+
+    default HandleFlag handle(ConnectionContext context, ByteBuf in, ByteBuf transformed) throws Exception {
+        throw new UnsupportedOperationException("Packet handler does not implement handle(): " + getClass().getName());
+    }
 }
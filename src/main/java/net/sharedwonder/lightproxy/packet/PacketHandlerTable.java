@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.packet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import org.jspecify.annotations.Nullable;
+
+public final class PacketHandlerTable<T extends PacketHandler> {
+    public static final int MAX_PACKET_ID = 0xff;
+
+    public static final int UNKNOWN_PROTOCOL_VERSION = -1;
+
+    private static final PacketHandler[] EMPTY = new PacketHandler[0];
+
+    private volatile Snapshot snapshot = new Snapshot(List.of());
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public T get(int protocolVersion, int id) {
+        var handlers = resolve(protocolVersion);
+        return id >= 0 && id < handlers.length ? (T) handlers[id] : null;
+    }
+
+    public PacketHandler[] resolve(int protocolVersion) {
+        return snapshot.resolve(protocolVersion);
+    }
+
+    public void register(T handler) {
+        register(handler, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    public synchronized void register(T handler, int minProtocolVersion, int maxProtocolVersion) {
+        var id = handler.getId();
+        if (id < 0 || id > MAX_PACKET_ID) {
+            throw new IllegalArgumentException("Invalid packet ID: " + id);
+        }
+        if (minProtocolVersion > maxProtocolVersion) {
+            throw new IllegalArgumentException("Invalid protocol version range: " + minProtocolVersion + ".." + maxProtocolVersion);
+        }
+
+        var registrations = new ArrayList<Registration>(snapshot.registrations.size() + 1);
+        for (var registration : snapshot.registrations) {
+            if (registration.handler.getId() != id || registration.minProtocolVersion != minProtocolVersion ||
+                registration.maxProtocolVersion != maxProtocolVersion) {
+                registrations.add(registration);
+            }
+        }
+        registrations.add(new Registration(handler, minProtocolVersion, maxProtocolVersion));
+        snapshot = new Snapshot(List.copyOf(registrations));
+    }
+
+    public synchronized void unregister(int id) {
+        var registrations = new ArrayList<Registration>(snapshot.registrations.size());
+        for (var registration : snapshot.registrations) {
+            if (registration.handler.getId() != id) {
+                registrations.add(registration);
+            }
+        }
+        if (registrations.size() != snapshot.registrations.size()) {
+            snapshot = new Snapshot(List.copyOf(registrations));
+        }
+    }
+
+    private record Registration(PacketHandler handler, int minProtocolVersion, int maxProtocolVersion) {
+        boolean isForAllVersions() {
+            return minProtocolVersion == Integer.MIN_VALUE && maxProtocolVersion == Integer.MAX_VALUE;
+        }
+
+        boolean matches(long protocolVersion) {
+            return protocolVersion >= minProtocolVersion && protocolVersion <= maxProtocolVersion;
+        }
+    }
+
+    // The registered ranges split the protocol versions into intervals that each resolve to the same handlers,
+    // so the handler arrays are built per interval up front rather than per requested version.
+    private static final class Snapshot {
+        final List<Registration> registrations;
+
+        private final long[] intervalStarts;
+
+        private final PacketHandler[][] intervalHandlers;
+
+        private final PacketHandler[] unknownVersionHandlers;
+
+        Snapshot(List<Registration> registrations) {
+            this.registrations = registrations;
+
+            var starts = new TreeSet<Long>();
+            starts.add((long) Integer.MIN_VALUE);
+            for (var registration : registrations) {
+                starts.add((long) registration.minProtocolVersion);
+                if (registration.maxProtocolVersion < Integer.MAX_VALUE) {
+                    starts.add(registration.maxProtocolVersion + 1L);
+                }
+            }
+
+            intervalStarts = new long[starts.size()];
+            intervalHandlers = new PacketHandler[starts.size()][];
+            var index = 0;
+            for (var start : starts) {
+                intervalStarts[index] = start;
+                intervalHandlers[index] = build(registration -> registration.matches(start));
+                ++index;
+            }
+            unknownVersionHandlers = build(Registration::isForAllVersions);
+        }
+
+        PacketHandler[] resolve(int protocolVersion) {
+            if (protocolVersion == UNKNOWN_PROTOCOL_VERSION) {
+                return unknownVersionHandlers;
+            }
+            var index = Arrays.binarySearch(intervalStarts, protocolVersion);
+            return intervalHandlers[index >= 0 ? index : -index - 2];
+        }
+
+        private PacketHandler[] build(Predicate<Registration> filter) {
+            var handlers = EMPTY;
+            for (var registration : registrations) {
+                if (filter.test(registration)) {
+                    var id = registration.handler.getId();
+                    if (id >= handlers.length) {
+                        handlers = Arrays.copyOf(handlers, id + 1);
+                    }
+                    handlers[id] = registration.handler;
+                }
+            }
+            return handlers;
+        }
+    }
+}
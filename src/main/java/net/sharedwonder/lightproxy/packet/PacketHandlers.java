@@ -16,12 +16,12 @@
 
 package net.sharedwonder.lightproxy.packet;
 
-import java.util.HashMap;
-import java.util.Map;
 import net.sharedwonder.lightproxy.Constants;
 import net.sharedwonder.lightproxy.handler.CHHandshake;
 import net.sharedwonder.lightproxy.handler.CLEncryptionResponse;
 import net.sharedwonder.lightproxy.handler.CLRequestLogin;
+import net.sharedwonder.lightproxy.handler.CSPing;
+import net.sharedwonder.lightproxy.handler.CSStatusRequest;
 import net.sharedwonder.lightproxy.handler.SLEnableCompression;
 import net.sharedwonder.lightproxy.handler.SLLoginSuccess;
 import net.sharedwonder.lightproxy.handler.SLRequestEncryption;
@@ -31,24 +31,25 @@ import org.jspecify.annotations.Nullable;
 public final class PacketHandlers {
     private PacketHandlers() {}
 
-    public static final Map<Integer, C2SPacketHandler> C2S_PLAY_PACKET_HANDLERS = new HashMap<>();
+    public static final PacketHandlerTable<C2SPacketHandler> C2S_PLAY_PACKET_HANDLERS = new PacketHandlerTable<>();
 
-    public static final Map<Integer, C2SPacketHandler> C2S_STATUS_PACKET_HANDLERS = new HashMap<>();
+    public static final PacketHandlerTable<C2SPacketHandler> C2S_STATUS_PACKET_HANDLERS = new PacketHandlerTable<>();
 
-    public static final Map<Integer, C2SPacketHandler> C2S_LOGIN_PACKET_HANDLERS = new HashMap<>();
+    public static final PacketHandlerTable<C2SPacketHandler> C2S_LOGIN_PACKET_HANDLERS = new PacketHandlerTable<>();
 
-    public static final Map<Integer, S2CPacketHandler> S2C_PLAY_PACKET_HANDLERS = new HashMap<>();
+    public static final PacketHandlerTable<S2CPacketHandler> S2C_PLAY_PACKET_HANDLERS = new PacketHandlerTable<>();
 
-    public static final Map<Integer, S2CPacketHandler> S2C_LOGIN_PACKET_HANDLERS = new HashMap<>();
+    public static final PacketHandlerTable<S2CPacketHandler> S2C_LOGIN_PACKET_HANDLERS = new PacketHandlerTable<>();
 
-    public static final Map<Integer, S2CPacketHandler> S2C_STATUS_PACKET_HANDLERS = new HashMap<>();
+    public static final PacketHandlerTable<S2CPacketHandler> S2C_STATUS_PACKET_HANDLERS = new PacketHandlerTable<>();
 
-    @Nullable
-    private static C2SPacketHandler clientHandshakePacketHandler;
+    public static final PacketHandlerTable<C2SPacketHandler> C2S_HANDSHAKE_PACKET_HANDLERS = new PacketHandlerTable<>();
 
     static {
-        clientHandshakePacketHandler = new CHHandshake();
+        registerHandler(C2S_HANDSHAKE_PACKET_HANDLERS, new CHHandshake());
 
+        registerHandler(C2S_STATUS_PACKET_HANDLERS, new CSStatusRequest());
+        registerHandler(C2S_STATUS_PACKET_HANDLERS, new CSPing());
         registerHandler(C2S_LOGIN_PACKET_HANDLERS, new CLRequestLogin());
         registerHandler(C2S_LOGIN_PACKET_HANDLERS, new CLEncryptionResponse());
 
@@ -56,26 +57,34 @@ public final class PacketHandlers {
         registerHandler(S2C_LOGIN_PACKET_HANDLERS, new SLLoginSuccess());
         registerHandler(S2C_LOGIN_PACKET_HANDLERS, new SLEnableCompression());
 
-        registerHandler(S2C_PLAY_PACKET_HANDLERS, new SPV47SetCompressionLevel());
+        registerHandler(S2C_PLAY_PACKET_HANDLERS, new SPV47SetCompressionLevel(), Constants.PROTOCOL_VERSION_1_8_X, Constants.PROTOCOL_VERSION_1_8_X);
     }
 
     @Nullable
     public static C2SPacketHandler getClientHandshakePacketHandler() {
-        return clientHandshakePacketHandler;
+        return C2S_HANDSHAKE_PACKET_HANDLERS.get(PacketHandlerTable.UNKNOWN_PROTOCOL_VERSION, Constants.PID_CH_HANDSHAKE);
     }
 
     public static void setClientHandshakePacketHandler(@Nullable C2SPacketHandler handler) {
         if (handler != null && handler.getId() != Constants.PID_CH_HANDSHAKE) {
             throw new IllegalArgumentException("Handshake packet handler ID must be 0x0");
         }
-        clientHandshakePacketHandler = handler;
+        if (handler == null) {
+            unregisterHandler(C2S_HANDSHAKE_PACKET_HANDLERS, Constants.PID_CH_HANDSHAKE);
+        } else {
+            registerHandler(C2S_HANDSHAKE_PACKET_HANDLERS, handler);
+        }
+    }
+
+    public static <T extends PacketHandler> void registerHandler(PacketHandlerTable<T> table, T handler) {
+        table.register(handler);
     }
 
-    public static <T extends PacketHandler> void registerHandler(Map<? super Integer, T> map, T handler) {
-        map.put(handler.getId(), handler);
+    public static <T extends PacketHandler> void registerHandler(PacketHandlerTable<T> table, T handler, int minProtocolVersion, int maxProtocolVersion) {
+        table.register(handler, minProtocolVersion, maxProtocolVersion);
     }
 
-    public static void unregisterHandler(Map<? super Integer, ? extends PacketHandler> map, int id) {
-        map.remove(id);
+    public static void unregisterHandler(PacketHandlerTable<?> table, int id) {
+        table.unregister(id);
     }
 }
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy.packet;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * The body of a transformed packet, excluding the packet ID. It is only used when the handler returns {@link HandleFlag#TRANSFORMED}.
+ * Buffers passed to {@link #append(ByteBuf)} follow the bytes written to {@link #buffer()}, and their ownership is transferred.
+ */
+public interface PacketOutput {
+    ByteBuf buffer();
+
+    void append(ByteBuf buffer);
+}
@@ -26,6 +26,8 @@ public final class PacketUtils {
 
     public static final int VARINT_MAX_SIZE = 5;
 
+    public static final int VARINT21_MAX_VALUE = (1 << 21) - 1;
+
     public static int calcVarintSize(int value) {
         var shift = 7;
         for (var result = 1; result < VARINT_MAX_SIZE; ++result) {
@@ -78,6 +80,47 @@ public final class PacketUtils {
         throw new DecoderException("Invalid varint");
     }
 
+    public static int getVarint(ByteBuf buffer, int index) {
+        var result = 0;
+        var shift = 0;
+
+        for (var counter = 0; counter < VARINT_MAX_SIZE; ++counter) {
+            var b = buffer.getByte(index + counter);
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+            shift += 7;
+        }
+
+        throw new DecoderException("Invalid varint");
+    }
+
+    /**
+     * Reads the length prefix of a frame, or returns {@code -1} if the buffer ends before the prefix is complete.
+     */
+    public static int readFrameSize(ByteBuf buffer) {
+        var result = 0;
+        var shift = 0;
+
+        for (var counter = 0; counter < VARINT_MAX_SIZE; ++counter) {
+            if (!buffer.isReadable()) {
+                return -1;
+            }
+            var b = buffer.readByte();
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                if (result < 0) {
+                    throw new DecoderException("Invalid frame size: " + result);
+                }
+                return result;
+            }
+            shift += 7;
+        }
+
+        throw new DecoderException("Invalid varint");
+    }
+
     public static void writeVarint(ByteBuf buffer, int value) {
         var input = value;
 
@@ -89,6 +132,10 @@ public final class PacketUtils {
         buffer.writeByte((byte) input);
     }
 
+    public static void setVarint21(ByteBuf buffer, int index, int value) {
+        buffer.setMedium(index, (value & 0x7f | 0x80) << 16 | ((value >>> 7) & 0x7f | 0x80) << 8 | (value >>> 14) & 0x7f);
+    }
+
     public static byte[] readByteArray(ByteBuf buffer) {
         return readBytes(buffer, checkChunkSize(readVarint(buffer)));
     }
@@ -18,6 +18,7 @@ package net.sharedwonder.lightproxy
 
 import java.util.Queue
 import java.util.UUID
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.function.Function
 import java.util.function.Supplier
@@ -25,6 +26,10 @@ import io.netty.buffer.ByteBuf
 import net.sharedwonder.lightproxy.addon.ExternalContext
 import net.sharedwonder.lightproxy.crypt.EncryptionContext
 import net.sharedwonder.lightproxy.crypt.EncryptionDisabledContext
+import net.sharedwonder.lightproxy.packet.PacketContinuation
+import net.sharedwonder.lightproxy.packet.PacketHandler
+import net.sharedwonder.lightproxy.packet.PacketHandlerTable
+import net.sharedwonder.lightproxy.packet.PacketType
 import net.sharedwonder.lightproxy.util.ConnectionState
 import org.apache.logging.log4j.LogManager
 
@@ -37,9 +42,15 @@ class ConnectionContext(private val lightProxy: LightProxy) {
 
     val accounts: AccountMap? get() = lightProxy.accounts
 
-    val attachedC2SPackets: Queue<ByteBuf> = ConcurrentLinkedQueue()
+    val config: ProxyConfig get() = lightProxy.config
+
+    val transport: Transport get() = lightProxy.transport
 
-    val attachedS2CPackets: Queue<ByteBuf> = ConcurrentLinkedQueue()
+    val sessionRegistry: SessionRegistry get() = lightProxy.sessionRegistry
+
+    val statusCache: StatusCache get() = lightProxy.statusCache
+
+    val attachedC2SPackets: Queue<ByteBuf> = ConcurrentLinkedQueue()
 
     val externalContexts: Map<Class<out ExternalContext>, ExternalContext> = buildMap {
         for ((type, generator) in externalContextTypes) {
@@ -58,6 +69,20 @@ class ConnectionContext(private val lightProxy: LightProxy) {
     var isClientFromLocalhost: Boolean = false
         private set
 
+    var localStatusResponse: String? = null
+
+    @Volatile
+    var isTunnelAllowed: Boolean = true
+        private set
+
+    @Volatile
+    var isC2STunneled: Boolean = false
+        private set
+
+    @Volatile
+    var isS2CTunneled: Boolean = false
+        private set
+
     private var _clientAddress: String? = null
     var clientAddress: String
         get() = checkNotNull(_clientAddress) { "clientAddress is not set" }
@@ -73,6 +98,8 @@ class ConnectionContext(private val lightProxy: LightProxy) {
         set(value) {
             check(_protocolVersion == null)
             _protocolVersion = value
+            c2sPacketHandlers = PacketType.C2S.resolveHandlers(value)
+            s2cPacketHandlers = PacketType.S2C.resolveHandlers(value)
         }
 
     private var _playerUsername: String? = null
@@ -91,17 +118,111 @@ class ConnectionContext(private val lightProxy: LightProxy) {
             _playerUuid = value
         }
 
+    private var c2sPacketHandlers = PacketType.C2S.resolveHandlers(PacketHandlerTable.UNKNOWN_PROTOCOL_VERSION)
+
+    private var s2cPacketHandlers = PacketType.S2C.resolveHandlers(PacketHandlerTable.UNKNOWN_PROTOCOL_VERSION)
+
+    // Raw packets and pre-encoded broadcast frames share one queue so they reach the client in the order they were sent
+    private val attachedS2CPackets: Queue<EncodedPacket> = ConcurrentLinkedQueue()
+
+    @Volatile
+    private var c2sPacketInjector: Runnable? = null
+
+    @Volatile
+    private var s2cPacketInjector: Runnable? = null
+
+    private var backendConnector: Supplier<CompletableFuture<Void>>? = null
+
+    private var deferredHandle: CompletableFuture<out PacketContinuation>? = null
+
+    private var loginAdmission: CompletableFuture<LoginAdmissionController.Permit>? = null
+
     fun <T : ExternalContext> getExternalContext(type: Class<T>): T = type.cast(externalContexts[type])
 
+    fun getPacketHandler(packetType: PacketType, id: Int): PacketHandler? {
+        val handlers = (if (packetType == PacketType.C2S) c2sPacketHandlers else s2cPacketHandlers)[connectionState.ordinal]
+        return if (id >= 0 && id < handlers.size) handlers[id] else null
+    }
+
+    fun hasPacketHandlers(state: ConnectionState): Boolean =
+        c2sPacketHandlers[state.ordinal].any { it != null } || s2cPacketHandlers[state.ordinal].any { it != null }
+
+    fun disallowTunnel() {
+        isTunnelAllowed = false
+    }
+
+    fun markTunneled(packetType: PacketType) {
+        if (packetType == PacketType.C2S) isC2STunneled = true else isS2CTunneled = true
+    }
+
+    fun setPacketInjector(packetType: PacketType, injector: Runnable) {
+        if (packetType == PacketType.C2S) c2sPacketInjector = injector else s2cPacketInjector = injector
+    }
+
+    fun setBackendConnector(connector: Supplier<CompletableFuture<Void>>?) {
+        backendConnector = connector
+    }
+
+    fun connectBackend(): CompletableFuture<Void> = backendConnector?.get() ?: CompletableFuture.completedFuture(null)
+
+    fun deferHandle(continuation: CompletableFuture<out PacketContinuation>) {
+        check(deferredHandle == null) { "Another packet handling has already been deferred" }
+        deferredHandle = continuation
+    }
+
+    fun takeDeferredHandle(): CompletableFuture<out PacketContinuation>? {
+        val continuation = deferredHandle
+        deferredHandle = null
+        return continuation
+    }
+
+    fun requestLoginAdmission(): CompletableFuture<LoginAdmissionController.Permit> {
+        loginAdmission?.let { return it }
+        return lightProxy.loginAdmissionController.acquire().also { loginAdmission = it }
+    }
+
+    private fun releaseLoginAdmission() {
+        val admission = loginAdmission ?: return
+        loginAdmission = null
+        if (!admission.cancel(false) && !admission.isCompletedExceptionally) {
+            admission.join().release()
+        }
+    }
+
     fun sendToClient(packet: ByteBuf) {
+        if (isS2CTunneled) {
+            packet.release()
+            throw IllegalStateException("The server-to-client direction has been switched to the tunnel mode")
+        }
+        // The injector runs on the event loop and releases the packet if the tunnel mode won the race
+        attachedS2CPackets.add(EncodedPacket(packet, -1))
+        s2cPacketInjector?.run()
+    }
+
+    fun sendEncodedToClient(packet: EncodedPacket): Boolean {
+        if (isS2CTunneled) {
+            return false
+        }
         attachedS2CPackets.add(packet)
+        s2cPacketInjector?.run()
+        return true
     }
 
+    fun pollAttachedS2CPacket(): EncodedPacket? = attachedS2CPackets.poll()
+
+    fun hasAttachedS2CPackets(): Boolean = attachedS2CPackets.isNotEmpty()
+
     fun sendToServer(packet: ByteBuf) {
+        if (isC2STunneled) {
+            packet.release()
+            throw IllegalStateException("The client-to-server direction has been switched to the tunnel mode")
+        }
         attachedC2SPackets.add(packet)
+        c2sPacketInjector?.run()
     }
 
     fun onConnect() {
+        sessionRegistry.register(this, clientAddress)
         for (externalContext in externalContexts.values) {
             try {
                 externalContext.onConnect()
@@ -112,6 +233,8 @@ class ConnectionContext(private val lightProxy: LightProxy) {
     }
 
     fun afterLogin() {
+        releaseLoginAdmission()
+        _playerUuid?.let { sessionRegistry.registerPlayer(this, it, _playerUsername) }
         for (externalContext in externalContexts.values) {
             try {
                 externalContext.afterLogin()
@@ -122,6 +245,8 @@ class ConnectionContext(private val lightProxy: LightProxy) {
     }
 
     fun onDisconnect() {
+        releaseLoginAdmission()
+        sessionRegistry.unregister(this, _clientAddress, _playerUuid, _playerUsername)
         for (externalContext in externalContexts.values) {
             try {
                 externalContext.onDisconnect()
@@ -137,6 +262,10 @@ class ConnectionContext(private val lightProxy: LightProxy) {
         private val externalContextTypes: MutableMap<Class<out ExternalContext>, Function<in ConnectionContext, out ExternalContext>> =
             HashMap()
 
+        @JvmStatic
+        @Volatile
+        var backendConnectPolicy: BackendConnectPolicy? = null
+
         @JvmStatic
         fun <T : ExternalContext> registerExternalContextType(type: Class<T>, generator: Supplier<T>) {
             externalContextTypes[type] = Function { generator.get() }
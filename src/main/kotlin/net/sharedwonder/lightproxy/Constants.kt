@@ -19,11 +19,17 @@
 package net.sharedwonder.lightproxy
 
 const val PID_CH_HANDSHAKE: Int = 0x0
+const val PID_CS_STATUS_REQUEST: Int = 0x0
+const val PID_CS_PING: Int = 0x1
 const val PID_CL_REQUEST_LOGIN: Int = 0x0
 const val PID_CL_ENCRYPTION_RESPONSE: Int = 0x1
+const val PID_SS_STATUS_RESPONSE: Int = 0x0
+const val PID_SS_PONG: Int = 0x1
 const val PID_SL_REQUEST_ENCRYPTION: Int = 0x1
 const val PID_SL_LOGIN_SUCCESS: Int = 0x2
 const val PID_SL_ENABLE_COMPRESSION: Int = 0x3
 const val PID_SP_V47_SET_COMPRESSION_LEVEL: Int = 0x46
 
+const val PROTOCOL_VERSION_1_8_X: Int = 47
+
 const val DEFAULT_PORT: Int = 25565
@@ -18,17 +18,20 @@ package net.sharedwonder.lightproxy
 
 import java.io.File
 import java.util.Hashtable
+import java.util.concurrent.TimeUnit
 import javax.naming.directory.DirContext
 import javax.naming.directory.InitialDirContext
 import io.netty.bootstrap.ServerBootstrap
 import io.netty.channel.ChannelInitializer
 import io.netty.channel.ChannelOption
 import io.netty.channel.MultiThreadIoEventLoopGroup
-import io.netty.channel.nio.NioIoHandler
+import io.netty.channel.WriteBufferWaterMark
 import io.netty.channel.socket.SocketChannel
-import io.netty.channel.socket.nio.NioServerSocketChannel
 import net.sharedwonder.lightproxy.addon.AddonLoader
 import net.sharedwonder.lightproxy.config.ConfigManager
+import net.sharedwonder.lightproxy.crypt.CipherProviders
+import net.sharedwonder.lightproxy.crypt.CryptUtils
+import net.sharedwonder.lightproxy.packet.PacketCompressionUtils
 import org.apache.logging.log4j.LogManager
 
 class LightProxy(val bindPort: Int, host: String, port: Int, accountFile: File, addonDir: File, configDir: File) {
@@ -38,10 +41,31 @@ class LightProxy(val bindPort: Int, host: String, port: Int, accountFile: File,
 
     val accounts: AccountMap?
 
+    val config: ProxyConfig
+
+    val loginAdmissionController: LoginAdmissionController
+
+    val sessionRegistry: SessionRegistry = SessionRegistry()
+
+    val statusCache: StatusCache
+
+    val transport: Transport
+
+    private val writeBufferWaterMark: WriteBufferWaterMark
+
     init {
         try {
             ConfigManager.init(configDir)
+            config = ConfigManager.getConfig(ProxyConfig::class.java)
+            PacketCompressionUtils.configure(config.compressionLevel, config.compressionStrategy)
+            writeBufferWaterMark = WriteBufferWaterMark(config.writeBufferLowWaterMark, config.writeBufferHighWaterMark)
+
             AddonLoader.init(addonDir)
+            CipherProviders.select(config.cipherProvider)
+            transport = Transport.select(config.transport)
+            logger.info(fun(): String = "Using the transport: ${transport.getName()}")
+            CryptUtils.initKeyPairPool(config.keyPairPoolSize, config.keyPairReuseWhenExhausted)
+            loginAdmissionController = LoginAdmissionController(config.maxInFlightLogins, config.loginQueueCapacity)
 
             var accounts: MutableAccountMap? = null
             if (accountFile.isFile) {
@@ -63,6 +87,7 @@ class LightProxy(val bindPort: Int, host: String, port: Int, accountFile: File,
             val server = lookupServer(host, port)
             remoteAddress = server.first
             remotePort = server.second
+            statusCache = StatusCache(this)
 
             logger.info(fun(): String = "Remote server: ${if (':' in remoteAddress) "[$remoteAddress]" else remoteAddress}:$remotePort")
         } catch (exception: Throwable) {
@@ -72,23 +97,40 @@ class LightProxy(val bindPort: Int, host: String, port: Int, accountFile: File,
     }
 
     fun run(): Int {
-        val bossGroup = MultiThreadIoEventLoopGroup(NioIoHandler.newFactory())
-        val workerGroup = MultiThreadIoEventLoopGroup(NioIoHandler.newFactory())
+        var listeners = config.listeners.coerceAtLeast(1)
+        if (listeners > 1 && !transport.supportsReusePort()) {
+            logger.warn(fun(): String = "Multiple listeners require SO_REUSEPORT, which the transport ${transport.getName()} does not support")
+            listeners = 1
+        }
+
+        val bossGroup = MultiThreadIoEventLoopGroup(if (config.bossThreads > 0) config.bossThreads else listeners, transport.newIoHandlerFactory())
+        val workerGroup = MultiThreadIoEventLoopGroup(config.workerThreads.coerceAtLeast(0), transport.newIoHandlerFactory())
 
         try {
             val serverBootstrap = ServerBootstrap()
             serverBootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel::class.java)
+                .channel(transport.serverChannelClass)
                 .childOption(ChannelOption.TCP_NODELAY, true)
-                .childHandler(object : ChannelInitializer<SocketChannel>() {
-                    override fun initChannel(channel: SocketChannel) {
-                        channel.pipeline().addLast(ProxyServerHandler(this@LightProxy))
-                    }
-                })
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+            transport.configureChild(serverBootstrap, config)
+            if (listeners > 1) {
+                transport.enableReusePort(serverBootstrap)
+            }
+            serverBootstrap.childHandler(object : ChannelInitializer<SocketChannel>() {
+                override fun initChannel(channel: SocketChannel) {
+                    channel.pipeline().addLast(ProxyServerHandler(this@LightProxy))
+                }
+            })
 
-            val channelFuture = serverBootstrap.bind(bindPort).sync()
-            logger.info(fun(): String = "Listening on the port $bindPort")
-            channelFuture.channel().closeFuture().sync()
+            val channels = List(listeners) { serverBootstrap.bind(bindPort).sync().channel() }
+            if (config.metricsLogIntervalSeconds > 0) {
+                val interval = config.metricsLogIntervalSeconds.toLong()
+                workerGroup.scheduleAtFixedRate(::logMetrics, interval, interval, TimeUnit.SECONDS)
+            }
+            logger.info(fun(): String = "Listening on the port $bindPort" + if (listeners > 1) " with $listeners listeners" else "")
+            for (channel in channels) {
+                channel.closeFuture().sync()
+            }
             return 0
         } catch (exception: Throwable) {
             logger.fatal("A fatal exception occurred", exception)
@@ -99,6 +141,32 @@ class LightProxy(val bindPort: Int, host: String, port: Int, accountFile: File,
         }
     }
 
+    val scratchHighWaterMark: Long get() = ScratchArena.getHighWaterMark()
+
+    private var lastLoginCount = 0L
+
+    private var lastScratchHighWaterMark = 0L
+
+    private fun logMetrics() {
+        val highWaterMark = scratchHighWaterMark
+        if (highWaterMark != lastScratchHighWaterMark) {
+            lastScratchHighWaterMark = highWaterMark
+            logger.info(fun(): String = "Scratch buffer high-water mark: $highWaterMark bytes")
+        }
+
+        val admission = loginAdmissionController
+        val loginCount = admission.admitted + admission.rejected
+        if (loginCount == lastLoginCount && admission.queued == 0) {
+            return
+        }
+        lastLoginCount = loginCount
+        logger.info(
+            fun(): String = "Login admission: ${admission.inFlight} in flight, ${admission.queued} queued, ${admission.admitted} admitted, " +
+                "${admission.rejected} rejected, queue time ${admission.getAverageQueueTime(TimeUnit.MILLISECONDS)} ms on average, " +
+                "${admission.getMaxQueueTime(TimeUnit.MILLISECONDS)} ms at most"
+        )
+    }
+
     companion object {
         private val logger = LogManager.getLogger(LightProxy::class.java)
 
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2025 MythicAstra
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.sharedwonder.lightproxy
+
+import java.util.zip.Deflater
+import net.sharedwonder.lightproxy.config.Config
+import net.sharedwonder.lightproxy.config.ConfigFormat
+import net.sharedwonder.lightproxy.crypt.CipherProviders
+
+@Config(filename = "lightproxy.json", format = ConfigFormat.JSON)
+class ProxyConfig {
+    var compressionLevel: Int = Deflater.DEFAULT_COMPRESSION
+
+    var compressionStrategy: Int = Deflater.DEFAULT_STRATEGY
+
+    var cipherProvider: String = CipherProviders.AUTO
+
+    var keyPairPoolSize: Int = 16
+
+    var keyPairReuseWhenExhausted: Boolean = true
+
+    var maxInFlightLogins: Int = 64
+
+    var loginQueueCapacity: Int = 1024
+
+    var metricsLogIntervalSeconds: Int = 60
+
+    var directBuffers: Boolean = true
+
+    var flushConsolidation: Boolean = true
+
+    var flushMaxPendingBytes: Int = 64 * 1024
+
+    var flushMaxPendingWrites: Int = 64
+
+    var tunnelAfterLogin: Boolean = false
+
+    var cutThroughThreshold: Int = 64 * 1024
+
+    var deferBackendConnect: Boolean = false
+
+    var statusCacheTtlMillis: Long = 0
+
+    var statusMotd: String = ""
+
+    var statusPlayerCountOverlay: Boolean = false
+
+    var transport: String = Transport.AUTO
+
+    var bossThreads: Int = 0
+
+    var workerThreads: Int = 0
+
+    var listeners: Int = 1
+
+    var tcpFastOpenConnect: Boolean = false
+
+    var tcpQuickAck: Boolean = false
+
+    var socketReceiveBufferSize: Int = 0
+
+    var socketSendBufferSize: Int = 0
+
+    var writeBufferLowWaterMark: Int = 32 * 1024
+
+    var writeBufferHighWaterMark: Int = 64 * 1024
+}
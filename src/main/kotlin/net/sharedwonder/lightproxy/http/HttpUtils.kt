@@ -20,7 +20,10 @@ import java.io.IOException
 import java.net.URLEncoder
 import java.net.http.HttpClient
 import java.net.http.HttpRequest
+import java.net.http.HttpResponse
 import java.net.http.HttpResponse.BodyHandlers
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
 
 object HttpUtils {
     private val httpClient = HttpClient.newHttpClient()
@@ -28,12 +31,7 @@ object HttpUtils {
     @JvmStatic
     fun sendRequest(request: HttpRequest): HttpRequestResult {
         try {
-            val response = httpClient.send(request, BodyHandlers.ofByteArray())
-            return if (response.statusCode() < 400) {
-                HttpRequestResult.Success(response.statusCode(), response.body())
-            } else {
-                HttpRequestResult.HttpError(response.statusCode(), response.body())
-            }
+            return toResult(httpClient.send(request, BodyHandlers.ofByteArray()))
         } catch (exception: IOException) {
             return HttpRequestResult.IoError(exception)
         } catch (exception: InterruptedException) {
@@ -41,6 +39,17 @@ object HttpUtils {
         }
     }
 
+    @JvmStatic
+    fun sendRequestAsync(request: HttpRequest): CompletableFuture<HttpRequestResult> =
+        httpClient.sendAsync(request, BodyHandlers.ofByteArray()).handle { response, exception ->
+            if (exception == null) {
+                toResult(response)
+            } else {
+                val cause = if (exception is CompletionException) exception.cause ?: exception else exception
+                if (cause is IOException) HttpRequestResult.IoError(cause) else throw CompletionException(cause)
+            }
+        }
+
     @JvmStatic
     fun encodeMap(params: Map<String, String>): String {
         val builder = StringBuilder()
@@ -54,4 +63,11 @@ object HttpUtils {
         }
         return builder.toString()
     }
+
+    private fun toResult(response: HttpResponse<ByteArray>): HttpRequestResult =
+        if (response.statusCode() < 400) {
+            HttpRequestResult.Success(response.statusCode(), response.body())
+        } else {
+            HttpRequestResult.HttpError(response.statusCode(), response.body())
+        }
 }
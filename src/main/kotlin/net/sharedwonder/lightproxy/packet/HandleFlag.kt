@@ -21,5 +21,7 @@ enum class HandleFlag {
 
     TRANSFORMED,
 
-    BLOCKED
+    BLOCKED,
+
+    DEFERRED
 }
@@ -20,26 +20,36 @@ import net.sharedwonder.lightproxy.util.ConnectionState
 
 enum class PacketType {
     C2S {
-        override fun getPacketHandler(connectionState: ConnectionState, id: Int): C2SPacketHandler? {
-            return when (connectionState) {
-                ConnectionState.HANDSHAKE -> if (id != 0) null else PacketHandlers.getClientHandshakePacketHandler()
-                ConnectionState.PLAY -> PacketHandlers.C2S_PLAY_PACKET_HANDLERS[id]
-                ConnectionState.LOGIN -> PacketHandlers.C2S_LOGIN_PACKET_HANDLERS[id]
-                ConnectionState.STATUS -> PacketHandlers.C2S_STATUS_PACKET_HANDLERS[id]
-            }
-        }
+        private val tables = tablesOf(
+            ConnectionState.HANDSHAKE to PacketHandlers.C2S_HANDSHAKE_PACKET_HANDLERS,
+            ConnectionState.PLAY to PacketHandlers.C2S_PLAY_PACKET_HANDLERS,
+            ConnectionState.LOGIN to PacketHandlers.C2S_LOGIN_PACKET_HANDLERS,
+            ConnectionState.STATUS to PacketHandlers.C2S_STATUS_PACKET_HANDLERS
+        )
+
+        override fun resolveHandlers(protocolVersion: Int): Array<Array<PacketHandler?>> = resolve(tables, protocolVersion)
     },
 
     S2C {
-        override fun getPacketHandler(connectionState: ConnectionState, id: Int): S2CPacketHandler? {
-            return when (connectionState) {
-                ConnectionState.HANDSHAKE -> null
-                ConnectionState.PLAY -> PacketHandlers.S2C_PLAY_PACKET_HANDLERS[id]
-                ConnectionState.LOGIN -> PacketHandlers.S2C_LOGIN_PACKET_HANDLERS[id]
-                ConnectionState.STATUS -> PacketHandlers.S2C_STATUS_PACKET_HANDLERS[id]
-            }
-        }
+        private val tables = tablesOf(
+            ConnectionState.PLAY to PacketHandlers.S2C_PLAY_PACKET_HANDLERS,
+            ConnectionState.LOGIN to PacketHandlers.S2C_LOGIN_PACKET_HANDLERS,
+            ConnectionState.STATUS to PacketHandlers.S2C_STATUS_PACKET_HANDLERS
+        )
+
+        override fun resolveHandlers(protocolVersion: Int): Array<Array<PacketHandler?>> = resolve(tables, protocolVersion)
     };
 
-    abstract fun getPacketHandler(connectionState: ConnectionState, id: Int): PacketHandler?
+    abstract fun resolveHandlers(protocolVersion: Int): Array<Array<PacketHandler?>>
+
+    protected fun <T : PacketHandler> tablesOf(vararg tables: Pair<ConnectionState, PacketHandlerTable<T>>): Array<PacketHandlerTable<T>?> {
+        val result = arrayOfNulls<PacketHandlerTable<T>>(ConnectionState.entries.size)
+        for ((state, table) in tables) {
+            result[state.ordinal] = table
+        }
+        return result
+    }
+
+    protected fun resolve(tables: Array<out PacketHandlerTable<*>?>, protocolVersion: Int): Array<Array<PacketHandler?>> =
+        Array(tables.size) { tables[it]?.resolve(protocolVersion) ?: emptyArray() }
 }
@@ -22,6 +22,7 @@ import java.net.HttpURLConnection
 import java.net.URI
 import java.net.http.HttpRequest
 import java.util.UUID
+import java.util.concurrent.CompletableFuture
 import com.google.gson.JsonDeserializationContext
 import com.google.gson.JsonDeserializer
 import com.google.gson.JsonElement
@@ -37,6 +38,31 @@ import net.sharedwonder.lightproxy.mcauth.McAuth
 @JsonAdapter(PlayerProfile.JsonAdapter::class)
 data class PlayerProfile @JvmOverloads constructor(val username: String, val uuid: UUID, val auth: McAuth? = null) {
     fun joinServer(serverId: ByteArray) {
+        HttpUtils.sendRequest(joinServerRequest(serverId))
+            .onError { throw newException("Failed to request to join the server for the player '$username/${UuidUtils.uuidToString(uuid)}' on Minecraft Session Server") }
+    }
+
+    fun joinServerAsync(serverId: ByteArray): CompletableFuture<Void?> =
+        HttpUtils.sendRequestAsync(joinServerRequest(serverId)).thenApply { result ->
+            result.onError { throw newException("Failed to request to join the server for the player '$username/${UuidUtils.uuidToString(uuid)}' on Minecraft Session Server") }
+            null
+        }
+
+    @JvmOverloads
+    fun hasJoinedServer(serverId: ByteArray, clientIp: String? = null): Boolean {
+        return HttpUtils.sendRequest(hasJoinedServerRequest(serverId, clientIp))
+            .onError { throw newException("Failed to request to verify that the player '$username/${UuidUtils.uuidToString(uuid)}' has joined the server") }
+            .asResponse.status.let { it == HttpURLConnection.HTTP_OK }
+    }
+
+    @JvmOverloads
+    fun hasJoinedServerAsync(serverId: ByteArray, clientIp: String? = null): CompletableFuture<Boolean> =
+        HttpUtils.sendRequestAsync(hasJoinedServerRequest(serverId, clientIp)).thenApply { result ->
+            result.onError { throw newException("Failed to request to verify that the player '$username/${UuidUtils.uuidToString(uuid)}' has joined the server") }
+                .asResponse.status == HttpURLConnection.HTTP_OK
+        }
+
+    private fun joinServerRequest(serverId: ByteArray): HttpRequest {
         checkNotNull(auth) { "This player profile has no authentication information" }
 
         val body = JsonBuilder().objectValue {
@@ -45,14 +71,11 @@ data class PlayerProfile @JvmOverloads constructor(val username: String, val uui
             "serverId" value BigInteger(serverId).toString(16)
         }.writer.toString()
 
-        val request = HttpRequest.newBuilder(joinServerUri)
+        return HttpRequest.newBuilder(joinServerUri)
             .POST(HttpRequest.BodyPublishers.ofString(body)).header("Content-Type", "application/json; charset=utf-8").build()
-        HttpUtils.sendRequest(request)
-            .onError { throw newException("Failed to request to join the server for the player '$username/${UuidUtils.uuidToString(uuid)}' on Minecraft Session Server") }
     }
 
-    @JvmOverloads
-    fun hasJoinedServer(serverId: ByteArray, clientIp: String? = null): Boolean {
+    private fun hasJoinedServerRequest(serverId: ByteArray, clientIp: String?): HttpRequest {
         val args = buildMap {
             put("username", username)
             put("serverId", BigInteger(serverId).toString(16))
@@ -62,10 +85,7 @@ data class PlayerProfile @JvmOverloads constructor(val username: String, val uui
         }
 
         val uri = URI.create("https://sessionserver.mojang.com/session/minecraft/hasJoined?" + HttpUtils.encodeMap(args))
-        val request = HttpRequest.newBuilder(uri).GET().build()
-        return HttpUtils.sendRequest(request)
-            .onError { throw newException("Failed to request to verify that the player '$username/${UuidUtils.uuidToString(uuid)}' has joined the server") }
-            .asResponse.status.let { it == HttpURLConnection.HTTP_OK }
+        return HttpRequest.newBuilder(uri).GET().build()
     }
 
     internal class JsonAdapter : JsonSerializer<PlayerProfile>, JsonDeserializer<PlayerProfile> {